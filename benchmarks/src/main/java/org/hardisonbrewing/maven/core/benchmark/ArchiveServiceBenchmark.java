@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.codehaus.plexus.archiver.Archiver;
+import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.UnArchiver;
+import org.codehaus.plexus.archiver.zip.ZipArchiver;
+import org.codehaus.plexus.archiver.zip.ZipUnArchiver;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.hardisonbrewing.maven.core.ArchiveService;
+import org.hardisonbrewing.maven.core.FileUtils;
+import org.hardisonbrewing.maven.core.ThreadPoolService;
+import org.hardisonbrewing.maven.core.archive.ZipTransformer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Archives a synthetic tree to a zip and extracts it again. The plexus archivers are
+ * created directly since there is no {@link org.codehaus.plexus.archiver.manager.ArchiverManager} offline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArchiveServiceBenchmark {
+
+    @Param({ "100", "1000" })
+    public int fileCount;
+
+    @Param({ "1024", "65536" })
+    public int fileSize;
+
+    private File baseDir;
+    private File tree;
+    private File archive;
+    private File extracted;
+
+    @Setup
+    public void setup() throws IOException {
+
+        baseDir = SyntheticTree.createTempDirectory( "archive-service" );
+        new BenchmarkMojo( baseDir );
+
+        tree = new File( baseDir, "tree" );
+        SyntheticTree.create( tree, fileCount, fileSize );
+
+        archive = new File( baseDir, "tree.zip" );
+        ArchiveService.archive( tree, archive, createArchiver() );
+
+        extracted = new File( baseDir, "extracted" );
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        FileUtils.deleteDirectory( baseDir );
+    }
+
+    private static Archiver createArchiver() {
+
+        ZipArchiver archiver = new ZipArchiver();
+        archiver.enableLogging( new ConsoleLogger( Logger.LEVEL_DISABLED, "archiver" ) );
+        archiver.setForced( true );
+        return archiver;
+    }
+
+    private static UnArchiver createUnArchiver() {
+
+        ZipUnArchiver unArchiver = new ZipUnArchiver();
+        unArchiver.enableLogging( new ConsoleLogger( Logger.LEVEL_DISABLED, "unarchiver" ) );
+        return unArchiver;
+    }
+
+    @Benchmark
+    public File archive() throws ArchiverException {
+
+        File dest = new File( baseDir, "archive.zip" );
+        ArchiveService.archive( tree, dest, createArchiver() );
+        return dest;
+    }
+
+    @Benchmark
+    public File zip() throws ArchiverException {
+
+        File dest = new File( baseDir, "zip.zip" );
+        ArchiveService.zip( tree, dest, Deflater.DEFAULT_COMPRESSION, ThreadPoolService.getDefaultParallelism() );
+        return dest;
+    }
+
+    @Benchmark
+    public File repackage() throws ArchiverException {
+
+        File dest = new File( baseDir, "repackage.zip" );
+        ArchiveService.unarchive( archive, extracted, createUnArchiver() );
+        ArchiveService.archive( extracted, dest, createArchiver() );
+        return dest;
+    }
+
+    @Benchmark
+    public File transform() throws ArchiverException {
+
+        ZipTransformer zipTransformer = new ZipTransformer();
+        zipTransformer.rename( "dir0/", "renamed/" );
+        File dest = new File( baseDir, "transform.zip" );
+        ArchiveService.transform( archive, dest, zipTransformer );
+        return dest;
+    }
+
+    @Benchmark
+    public File unarchive() throws ArchiverException {
+
+        ArchiveService.unarchive( archive, extracted, createUnArchiver() );
+        return extracted;
+    }
+
+    @Benchmark
+    public File unzip() throws ArchiverException {
+
+        // without a marker every entry is written again
+        ArchiveService.getExtractionMarkerFile( extracted ).delete();
+        ArchiveService.unzip( archive, extracted, ThreadPoolService.getDefaultParallelism() );
+        return extracted;
+    }
+
+    @Benchmark
+    public File unzipUnchanged() throws ArchiverException {
+
+        ArchiveService.unzip( archive, extracted, ThreadPoolService.getDefaultParallelism() );
+        return extracted;
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.benchmark;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.installer.ArtifactInstaller;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectBuilder;
+import org.codehaus.plexus.archiver.manager.ArchiverManager;
+import org.hardisonbrewing.maven.core.JoJoMojo;
+
+/**
+ * An offline {@link JoJoMojo} for driving the services outside of a Maven build. Only the
+ * {@link MavenProject} and {@link MavenSession} are available, the repository and
+ * archiver components are null.
+ */
+public class BenchmarkMojo extends JoJoMojo {
+
+    private final MavenProject project;
+    private final MavenSession mavenSession;
+
+    public BenchmarkMojo(File baseDir) {
+
+        Build build = new Build();
+        build.setDirectory( new File( baseDir, "target" ).getPath() );
+        build.setOutputDirectory( new File( baseDir, "target" ).getPath() );
+        build.setSourceDirectory( new File( baseDir, "src" ).getPath() );
+        build.setFinalName( "benchmark" );
+
+        Model model = new Model();
+        model.setGroupId( "org.hardisonbrewing" );
+        model.setArtifactId( "benchmark" );
+        model.setVersion( "1.0-SNAPSHOT" );
+        model.setBuild( build );
+
+        project = new MavenProject( model );
+        project.setFile( new File( baseDir, "pom.xml" ) );
+
+        mavenSession = new MavenSession( null, null, null, null, null, Collections.EMPTY_LIST, baseDir.getPath(), new Properties(), new Date() );
+
+        setLog( new QuietLog() );
+    }
+
+    @Override
+    public void execute() {
+
+        // do nothing
+    }
+
+    @Override
+    public MavenProject getProject() {
+
+        return project;
+    }
+
+    @Override
+    public MavenSession getMavenSession() {
+
+        return mavenSession;
+    }
+
+    @Override
+    public ArchiverManager getArchiverManager() {
+
+        return null;
+    }
+
+    @Override
+    public ArtifactResolver getArtifactResolver() {
+
+        return null;
+    }
+
+    @Override
+    public ArtifactRepository getLocalRepository() {
+
+        return null;
+    }
+
+    @Override
+    public ArtifactFactory getArtifactFactory() {
+
+        return null;
+    }
+
+    @Override
+    public MavenProjectBuilder getProjectBuilder() {
+
+        return null;
+    }
+
+    @Override
+    public List<ArtifactRepository> getRemoteRepositories() {
+
+        return null;
+    }
+
+    @Override
+    public ArtifactInstaller getArtifactInstaller() {
+
+        return null;
+    }
+
+    /**
+     * A {@link Log} that drops everything below warn so logging does not skew the results.
+     */
+    private static final class QuietLog extends SystemStreamLog {
+
+        @Override
+        public boolean isDebugEnabled() {
+
+            return false;
+        }
+
+        @Override
+        public boolean isInfoEnabled() {
+
+            return false;
+        }
+
+        @Override
+        public void debug( CharSequence content ) {
+
+            // do nothing
+        }
+
+        @Override
+        public void info( CharSequence content ) {
+
+            // do nothing
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.hardisonbrewing.maven.core.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Recursive listing and last modified checks over a synthetic tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileUtilsBenchmark {
+
+    private static final String[] INCLUDES = new String[] { "**/*.java", "**/*.xml" };
+    private static final String[] EXCLUDES = new String[] { "**/dir7/**" };
+
+    @Param({ "1000", "10000", "100000" })
+    public int fileCount;
+
+    private File baseDir;
+    private File tree;
+
+    @Setup
+    public void setup() throws IOException {
+
+        baseDir = SyntheticTree.createTempDirectory( "file-utils" );
+        new BenchmarkMojo( baseDir );
+
+        tree = new File( baseDir, "tree" );
+        SyntheticTree.create( tree, fileCount, 0 );
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        FileUtils.deleteDirectory( baseDir );
+    }
+
+    @Benchmark
+    public String[] listFilePathsRecursive() {
+
+        return FileUtils.listFilePathsRecursive( tree, (String[]) null, (String[]) null );
+    }
+
+    @Benchmark
+    public String[] listFilePathsRecursiveFiltered() {
+
+        return FileUtils.listFilePathsRecursive( tree, INCLUDES, EXCLUDES );
+    }
+
+    @Benchmark
+    public long lastModified() {
+
+        return FileUtils.lastModified( tree, true );
+    }
+
+    @Benchmark
+    public boolean isModifiedSinceEpoch() {
+
+        // first file answers the query
+        return FileUtils.isModifiedSince( tree, 0 );
+    }
+
+    @Benchmark
+    public boolean isModifiedSinceNow() {
+
+        // nothing is newer so the whole tree is checked
+        return FileUtils.isModifiedSince( tree, Long.MAX_VALUE - 1 );
+    }
+}
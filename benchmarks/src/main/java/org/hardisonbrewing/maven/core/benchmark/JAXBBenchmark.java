@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+
+import org.hardisonbrewing.jaxb.ElementHandler;
+import org.hardisonbrewing.jaxb.JAXB;
+import org.hardisonbrewing.maven.core.FileUtils;
+import org.hardisonbrewing.maven.core.benchmark.jaxb.Catalog;
+import org.hardisonbrewing.maven.core.benchmark.jaxb.CatalogEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Marshals and unmarshals a synthetic {@link Catalog} document, and streams its entries from a file.
+ * </br>Run with <code>-prof gc</code> to compare the bytes allocated per operation by the String,
+ * byte[] and file paths.
+ * </br>The JAXB reference implementation cannot inject its optimized accessors on Java 9+
+ * without opening java.lang, so the reflection accessors are used on every JVM.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dcom.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize=true")
+public class JAXBBenchmark {
+
+    @Param({ "10", "10000" })
+    public int entryCount;
+
+    private File baseDir;
+    private Catalog catalog;
+    private String xml;
+    private byte[] xmlBytes;
+    private File xmlFile;
+
+    @Setup
+    public void setup() throws IOException, JAXBException {
+
+        baseDir = SyntheticTree.createTempDirectory( "jaxb" );
+        new BenchmarkMojo( baseDir );
+
+        catalog = new Catalog();
+        catalog.name = "benchmark";
+
+        for (int i = 0; i < entryCount; i++) {
+            CatalogEntry entry = new CatalogEntry();
+            entry.id = Integer.toString( i );
+            entry.groupId = "org.hardisonbrewing";
+            entry.artifactId = "artifact" + i;
+            entry.version = "1.0." + i;
+            entry.description = "A synthetic catalog entry";
+            catalog.entries.add( entry );
+        }
+
+        xml = JAXB.marshal( catalog );
+        xmlBytes = xml.getBytes( JAXB.ENCODING );
+
+        xmlFile = new File( baseDir, "catalog.xml" );
+        JAXB.marshal( xmlFile, catalog );
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        FileUtils.deleteDirectory( baseDir );
+    }
+
+    @Benchmark
+    public String marshal() throws JAXBException {
+
+        return JAXB.marshal( catalog );
+    }
+
+    @Benchmark
+    public Catalog unmarshal() throws JAXBException {
+
+        return JAXB.unmarshal( xml, Catalog.class );
+    }
+
+    @Benchmark
+    public Catalog unmarshalBytes() throws JAXBException {
+
+        return JAXB.unmarshal( xmlBytes, Catalog.class );
+    }
+
+    @Benchmark
+    public File marshalFile() throws JAXBException {
+
+        JAXB.marshal( xmlFile, catalog );
+        return xmlFile;
+    }
+
+    @Benchmark
+    public Catalog unmarshalFile() throws JAXBException {
+
+        return JAXB.unmarshal( xmlFile, Catalog.class );
+    }
+
+    @Benchmark
+    public int unmarshalFileStreaming() throws JAXBException {
+
+        final int[] count = new int[1];
+        JAXB.unmarshal( xmlFile, "entry", CatalogEntry.class, new ElementHandler<CatalogEntry>() {
+
+            @Override
+            public void handle( CatalogEntry element ) {
+
+                count[0]++;
+            }
+        } );
+        return count[0];
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.hardisonbrewing.maven.core.FileUtils;
+import org.hardisonbrewing.maven.core.PropertiesService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Expands ${...} variables in a synthetic text. One in every four variables is undefined
+ * and is left in place. The streaming form filters the text from a Reader to a Writer. Also
+ * looks up each property through PropertiesService.getProperty.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PropertiesServiceBenchmark {
+
+    private static final String DELIM_START = "${";
+    private static final String DELIM_END = "}";
+
+    @Param({ "100" })
+    public int propertyCount;
+
+    @Param({ "1000", "100000" })
+    public int valueLength;
+
+    private File baseDir;
+    private String value;
+
+    @Setup
+    public void setup() throws IOException {
+
+        baseDir = SyntheticTree.createTempDirectory( "properties-service" );
+        new BenchmarkMojo( baseDir );
+
+        for (int i = 0; i < propertyCount; i++) {
+            if ( i % 4 != 0 ) {
+                PropertiesService.putProperty( "property" + i, "value" + i );
+            }
+        }
+
+        Random random = new Random( valueLength );
+        StringBuffer stringBuffer = new StringBuffer();
+        while (stringBuffer.length() < valueLength) {
+            stringBuffer.append( "lorem ipsum dolor sit amet " );
+            stringBuffer.append( DELIM_START );
+            stringBuffer.append( "property" );
+            stringBuffer.append( random.nextInt( propertyCount ) );
+            stringBuffer.append( DELIM_END );
+            stringBuffer.append( '\n' );
+        }
+        value = stringBuffer.toString();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        FileUtils.deleteDirectory( baseDir );
+    }
+
+    @Benchmark
+    public String populateTemplateVariables() {
+
+        return PropertiesService.populateTemplateVariables( value, DELIM_START, DELIM_END );
+    }
+
+    @Benchmark
+    public Writer populateTemplateVariablesStreaming() throws IOException {
+
+        Writer writer = new StringWriter( value.length() );
+        PropertiesService.populateTemplateVariables( new StringReader( value ), writer, DELIM_START, DELIM_END );
+        return writer;
+    }
+
+    @Benchmark
+    public int getProperty() {
+
+        int found = 0;
+        for (int i = 0; i < propertyCount; i++) {
+            if ( PropertiesService.getProperty( "property" + i ) != null ) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.hardisonbrewing.maven.core.FileUtils;
+import org.hardisonbrewing.maven.core.ProjectService;
+import org.hardisonbrewing.maven.core.model.ProjectConfiguration;
+import org.hardisonbrewing.maven.core.model.Source;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Aggregates the source files of a default source directory and two additional sources
+ * nested inside it, so every nested file is reported twice and must be de-duplicated.
+ * </br>The score should grow linearly with the file count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SourceFilePathsBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    public int fileCount;
+
+    private File baseDir;
+
+    @Setup
+    public void setup() throws IOException {
+
+        baseDir = SyntheticTree.createTempDirectory( "source-file-paths" );
+        new BenchmarkMojo( baseDir );
+
+        File sourceDir = new File( ProjectService.getProject().getBuild().getSourceDirectory() );
+        SyntheticTree.create( sourceDir, fileCount, 0 );
+
+        ProjectConfiguration projectConfiguration = new ProjectConfiguration();
+        projectConfiguration.addSourceDirectory( createSource( sourceDir.getPath() ) );
+        projectConfiguration.addSourceDirectory( createSource( new File( sourceDir, "dir0" ).getPath() ) );
+        projectConfiguration.addSourceDirectory( createSource( new File( sourceDir, "dir1" ).getPath() ) );
+        ProjectService.setProjectConfiguration( projectConfiguration );
+    }
+
+    private static Source createSource( String directory ) {
+
+        Source source = new Source();
+        source.directory = directory;
+        return source;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        ProjectService.setProjectConfiguration( null );
+        FileUtils.deleteDirectory( baseDir );
+    }
+
+    @Benchmark
+    public String[] getSourceFilePaths() {
+
+        return ProjectService.getSourceFilePaths();
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.Random;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Builds synthetic directory trees for the benchmarks. Trees are deterministic for a
+ * given file count so results are comparable between runs.
+ */
+public class SyntheticTree {
+
+    public static final int FILES_PER_DIRECTORY = 50;
+    public static final int DIRECTORIES_PER_DIRECTORY = 8;
+
+    private static final String[] EXTENSIONS = new String[] { ".java", ".xml", ".properties", ".png" };
+
+    protected SyntheticTree() {
+
+        // do nothing
+    }
+
+    /**
+     * Create an empty temporary directory.
+     * @param prefix
+     * @return
+     * @throws IOException
+     */
+    public static File createTempDirectory( String prefix ) throws IOException {
+
+        File file = File.createTempFile( prefix, "" );
+        if ( !file.delete() || !file.mkdirs() ) {
+            throw new IOException( "Unable to create temp directory: " + file );
+        }
+        return file;
+    }
+
+    /**
+     * Create a tree below the specified directory holding the specified number of files.
+     * @param root The root directory.
+     * @param fileCount The number of files to create.
+     * @param fileSize The size of each file in bytes.
+     * @throws IOException
+     */
+    public static void create( File root, int fileCount, int fileSize ) throws IOException {
+
+        Random random = new Random( fileCount );
+        byte[] content = new byte[fileSize];
+        random.nextBytes( content );
+
+        // fill breadth first so the top level directories all exist for small trees
+        LinkedList<File> dirs = new LinkedList<File>();
+        dirs.add( root );
+
+        int created = 0;
+        while (created < fileCount) {
+
+            File dir = dirs.removeFirst();
+            dir.mkdirs();
+
+            for (int i = 0; i < FILES_PER_DIRECTORY && created < fileCount; i++) {
+                String extension = EXTENSIONS[created % EXTENSIONS.length];
+                write( new File( dir, "file" + created + extension ), content );
+                created++;
+            }
+
+            for (int i = 0; i < DIRECTORIES_PER_DIRECTORY; i++) {
+                dirs.add( new File( dir, "dir" + i ) );
+            }
+        }
+    }
+
+    private static void write( File file, byte[] content ) throws IOException {
+
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream( file );
+            outputStream.write( content );
+        }
+        finally {
+            IOUtil.close( outputStream );
+        }
+    }
+}
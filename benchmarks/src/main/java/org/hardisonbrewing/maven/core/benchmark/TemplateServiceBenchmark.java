@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.velocity.Template;
+import org.codehaus.plexus.util.IOUtil;
+import org.hardisonbrewing.maven.core.FileUtils;
+import org.hardisonbrewing.maven.core.TemplateService;
+import org.hardisonbrewing.maven.core.model.TemplateJob;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Renders a generated file template and the classpath template "benchmark.vm", and a batch
+ * of outputs from the file template one at a time and through the batch API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TemplateServiceBenchmark {
+
+    private static final String CLASSPATH_TEMPLATE = "benchmark.vm";
+    private static final int BATCH_SIZE = 100;
+
+    @Param({ "10", "1000" })
+    public int lineCount;
+
+    private File baseDir;
+    private File template;
+    private File output;
+    private Properties properties;
+    private List<TemplateJob> jobs;
+
+    @Setup
+    public void setup() throws IOException {
+
+        baseDir = SyntheticTree.createTempDirectory( "template-service" );
+        new BenchmarkMojo( baseDir );
+
+        properties = new Properties();
+        properties.setProperty( "name", "benchmark" );
+        properties.setProperty( "version", "1.0" );
+        properties.setProperty( "group", "org.hardisonbrewing" );
+        properties.setProperty( "description", "A synthetic template variable" );
+
+        template = new File( baseDir, "template.vm" );
+        output = new File( baseDir, "output.xml" );
+
+        FileWriter fileWriter = null;
+        try {
+            fileWriter = new FileWriter( template );
+            for (int i = 0; i < lineCount; i++) {
+                fileWriter.write( "<entry index=\"" + i + "\" name=\"${name}\" version=\"${version}\" group=\"${group}\" />\n" );
+            }
+        }
+        finally {
+            IOUtil.close( fileWriter );
+        }
+
+        jobs = new ArrayList<TemplateJob>( BATCH_SIZE );
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Properties overrides = new Properties();
+            overrides.setProperty( "name", "benchmark" + i );
+            jobs.add( new TemplateJob( template, new File( baseDir, "output" + i + ".xml" ), overrides ) );
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        FileUtils.deleteDirectory( baseDir );
+    }
+
+    @Benchmark
+    public File writeFileTemplate() throws IOException {
+
+        TemplateService.writeTemplate( template, properties, output );
+        return output;
+    }
+
+    @Benchmark
+    public File writeClasspathTemplate() throws IOException {
+
+        Template _template = TemplateService.getTemplateFromClasspath( CLASSPATH_TEMPLATE );
+        TemplateService.writeTemplate( _template, properties, output );
+        return output;
+    }
+
+    @Benchmark
+    public List<TemplateJob> writeTemplatesSequential() throws IOException {
+
+        for (TemplateJob job : jobs) {
+            Properties _properties = new Properties();
+            _properties.putAll( properties );
+            _properties.putAll( job.properties );
+            TemplateService.writeTemplate( job.template, _properties, job.file );
+        }
+        return jobs;
+    }
+
+    @Benchmark
+    public List<TemplateJob> writeTemplatesBatch() throws IOException {
+
+        TemplateService.writeTemplates( jobs, properties );
+        return jobs;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.jaxb;
+
+import javax.xml.bind.JAXBException;
+
+/**
+ * Receives each element unmarshalled while streaming a document.
+ * @see JAXB#unmarshal(java.io.InputStream, String, Class, ElementHandler)
+ */
+public interface ElementHandler<T> {
+
+    public void handle( T element ) throws JAXBException;
+}
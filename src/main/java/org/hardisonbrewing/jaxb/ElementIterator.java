@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.jaxb;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Unmarshals each element with a given local name, one at a time, as the document is read.
+ * Only the current element is held in memory. Elements are matched at any depth, but an element
+ * nested inside a matched element is unmarshalled as part of it.
+ * <p>
+ * Failures while reading are thrown from {@link #hasNext()} and {@link #next()} as an
+ * {@link IllegalStateException} wrapping the {@link JAXBException}.
+ * </p>
+ * The iterator must be closed, which also closes the {@link InputStream} it was created with.
+ * @see JAXB#iterate(InputStream, String, Class)
+ */
+public class ElementIterator<T> implements Iterator<T>, Closeable {
+
+    private final InputStream inputStream;
+    private final XMLStreamReader xmlStreamReader;
+    private final Unmarshaller unmarshaller;
+    private final String localName;
+    private final Class<T> clazz;
+
+    ElementIterator(InputStream inputStream, XMLStreamReader xmlStreamReader, Unmarshaller unmarshaller, String localName, Class<T> clazz) {
+
+        this.inputStream = inputStream;
+        this.xmlStreamReader = xmlStreamReader;
+        this.unmarshaller = unmarshaller;
+        this.localName = localName;
+        this.clazz = clazz;
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        try {
+            return advance();
+        }
+        catch (JAXBException e) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    @Override
+    public T next() {
+
+        try {
+            if ( !advance() ) {
+                throw new NoSuchElementException();
+            }
+            return read();
+        }
+        catch (JAXBException e) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    @Override
+    public void remove() {
+
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+
+        try {
+            xmlStreamReader.close();
+        }
+        catch (XMLStreamException e) {
+            // do nothing
+        }
+        finally {
+            IOUtil.close( inputStream );
+        }
+    }
+
+    /**
+     * Move to the start of the next matching element, unless already there.
+     * @return false if there are no more matching elements.
+     */
+    boolean advance() throws JAXBException {
+
+        try {
+            while (true) {
+                if ( xmlStreamReader.getEventType() == XMLStreamConstants.START_ELEMENT ) {
+                    if ( localName.equals( xmlStreamReader.getLocalName() ) ) {
+                        return true;
+                    }
+                }
+                if ( !xmlStreamReader.hasNext() ) {
+                    return false;
+                }
+                xmlStreamReader.next();
+            }
+        }
+        catch (XMLStreamException e) {
+            throw new JAXBException( e );
+        }
+    }
+
+    /**
+     * Unmarshal the element at the current position, leaving the reader just past its end.
+     */
+    T read() throws JAXBException {
+
+        JAXBElement<T> jaxbElement = unmarshaller.unmarshal( xmlStreamReader, clazz );
+        return jaxbElement.getValue();
+    }
+}
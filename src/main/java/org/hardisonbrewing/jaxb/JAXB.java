@@ -16,6 +16,8 @@
  */
 package org.hardisonbrewing.jaxb;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -23,20 +25,51 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Hashtable;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
 
 import org.codehaus.plexus.util.IOUtil;
 import org.hardisonbrewing.maven.core.JoJoMojo;
+import org.hardisonbrewing.maven.core.ThreadPoolService;
 
 public class JAXB {
 
-    private static Hashtable<Class<?>, JAXBContext> jaxbContexts = new Hashtable<Class<?>, JAXBContext>();
+    /**
+     * The charset marshalled bytes are written with.
+     */
+    public static final String ENCODING = "UTF-8";
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private static XMLInputFactory xmlInputFactory;
+
+    /**
+     * Contexts are built from a package, so they are shared by every class in it.
+     */
+    private static final ConcurrentMap<ContextKey, Future<CachedContext>> jaxbContexts = new ConcurrentHashMap<ContextKey, Future<CachedContext>>();
 
     protected JAXB() {
 
@@ -45,7 +78,8 @@ public class JAXB {
 
     public static <T> T unmarshal( String xml, Class<T> clazz ) throws JAXBException {
 
-        return unmarshal( xml.getBytes(), clazz );
+        // read the characters directly, there are no bytes to decode
+        return unmarshal( new StringReader( xml ), clazz );
     }
 
     public static <T> T unmarshal( byte[] bytes, Class<T> clazz ) throws JAXBException {
@@ -57,7 +91,8 @@ public class JAXB {
 
         InputStream inputStream = null;
         try {
-            inputStream = new FileInputStream( file );
+            // the parser decodes the bytes using the encoding in the XML declaration
+            inputStream = new BufferedInputStream( new FileInputStream( file ), STREAM_BUFFER_SIZE );
             return unmarshal( inputStream, clazz );
         }
         catch (Exception e) {
@@ -70,12 +105,24 @@ public class JAXB {
 
     public static <T> T unmarshal( InputStream inputStream, Class<T> clazz ) throws JAXBException {
 
+        return unmarshal( new StreamSource( inputStream ), clazz );
+    }
+
+    public static <T> T unmarshal( Reader reader, Class<T> clazz ) throws JAXBException {
+
+        return unmarshal( new StreamSource( reader ), clazz );
+    }
+
+    public static <T> T unmarshal( Source source, Class<T> clazz ) throws JAXBException {
+
         Object object;
 
         try {
 
-            Unmarshaller unmarshaller = getUnmarshaller( clazz );
-            object = unmarshaller.unmarshal( inputStream );
+            CachedContext cachedContext = getCachedContext( clazz );
+            Unmarshaller unmarshaller = cachedContext.acquireUnmarshaller();
+            object = unmarshaller.unmarshal( source );
+            cachedContext.releaseUnmarshaller( unmarshaller );
         }
         catch (JAXBException e) {
             JoJoMojo.getMojo().getLog().error( "", e );
@@ -90,19 +137,127 @@ public class JAXB {
         return (T) object;
     }
 
+    /**
+     * Unmarshal each element with the local name from the file, passing them to the handler one
+     * at a time as the file is read.
+     * @see #iterate(InputStream, String, Class)
+     */
+    public static <T> void unmarshal( File file, String localName, Class<T> clazz, ElementHandler<T> elementHandler ) throws JAXBException {
+
+        InputStream inputStream;
+        try {
+            inputStream = new BufferedInputStream( new FileInputStream( file ), STREAM_BUFFER_SIZE );
+        }
+        catch (Exception e) {
+            throw new JAXBException( e );
+        }
+        unmarshal( inputStream, localName, clazz, elementHandler );
+    }
+
+    /**
+     * Unmarshal each element with the local name, passing them to the handler one at a time as
+     * the stream is read. The stream is closed when done.
+     * @see #iterate(InputStream, String, Class)
+     */
+    public static <T> void unmarshal( InputStream inputStream, String localName, Class<T> clazz, ElementHandler<T> elementHandler ) throws JAXBException {
+
+        ElementIterator<T> elementIterator = iterate( inputStream, localName, clazz );
+        try {
+            while (elementIterator.advance()) {
+                elementHandler.handle( elementIterator.read() );
+            }
+        }
+        catch (JAXBException e) {
+            JoJoMojo.getMojo().getLog().error( "", e );
+            throw e;
+        }
+        finally {
+            elementIterator.close();
+        }
+    }
+
+    /**
+     * Return an {@link ElementIterator} over the elements with the local name in the file.
+     * @see #iterate(InputStream, String, Class)
+     */
+    public static <T> ElementIterator<T> iterate( File file, String localName, Class<T> clazz ) throws JAXBException {
+
+        InputStream inputStream;
+        try {
+            inputStream = new BufferedInputStream( new FileInputStream( file ), STREAM_BUFFER_SIZE );
+        }
+        catch (Exception e) {
+            throw new JAXBException( e );
+        }
+        return iterate( inputStream, localName, clazz );
+    }
+
+    /**
+     * Return an {@link ElementIterator} which unmarshals each element with the local name as the
+     * stream is read, so memory use does not grow with the size of the document. The iterator
+     * must be closed, which closes the stream.
+     * @param inputStream
+     * @param localName The local name of the repeated element.
+     * @param clazz The type to unmarshal each element as, which need not be a root element.
+     * @return
+     * @throws JAXBException
+     */
+    public static <T> ElementIterator<T> iterate( InputStream inputStream, String localName, Class<T> clazz ) throws JAXBException {
+
+        try {
+            XMLStreamReader xmlStreamReader = createXMLStreamReader( inputStream );
+
+            // the unmarshaller belongs to the iterator, which may be used from another thread
+            Unmarshaller unmarshaller = getUnmarshaller( clazz );
+            return new ElementIterator<T>( inputStream, xmlStreamReader, unmarshaller, localName, clazz );
+        }
+        catch (XMLStreamException e) {
+            IOUtil.close( inputStream );
+            throw new JAXBException( e );
+        }
+        catch (JAXBException e) {
+            IOUtil.close( inputStream );
+            throw e;
+        }
+    }
+
+    /**
+     * The JDK {@link XMLInputFactory} is not guaranteed to be thread safe, so readers are created one at a time.
+     */
+    private static synchronized XMLStreamReader createXMLStreamReader( InputStream inputStream ) throws XMLStreamException {
+
+        if ( xmlInputFactory == null ) {
+            xmlInputFactory = XMLInputFactory.newInstance();
+        }
+        return xmlInputFactory.createXMLStreamReader( inputStream );
+    }
+
     public static String marshal( Object object ) throws JAXBException {
 
+        // the UTF-8 byte output is the fastest path through the marshaller
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         marshal( outputStream, object );
-        return outputStream.toString();
+        try {
+            return outputStream.toString( ENCODING );
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new JAXBException( e );
+        }
     }
 
+    /**
+     * Marshal the object to the file, encoded as {@link #ENCODING}.
+     * @param file
+     * @param object
+     * @throws JAXBException
+     */
     public static void marshal( File file, Object object ) throws JAXBException {
 
         OutputStream outputStream = null;
         try {
-            outputStream = new FileOutputStream( file );
+            outputStream = new BufferedOutputStream( new FileOutputStream( file ), STREAM_BUFFER_SIZE );
             marshal( outputStream, object );
+            outputStream.flush();
         }
         catch (Exception e) {
             throw new JAXBException( e );
@@ -112,11 +267,29 @@ public class JAXB {
         }
     }
 
+    /**
+     * Marshal the object to the stream, encoded as {@link #ENCODING}.
+     * @param outputStream
+     * @param object
+     * @throws JAXBException
+     */
     public static void marshal( OutputStream outputStream, Object object ) throws JAXBException {
 
+        marshal( new StreamResult( outputStream ), object );
+    }
+
+    public static void marshal( Writer writer, Object object ) throws JAXBException {
+
+        marshal( new StreamResult( writer ), object );
+    }
+
+    public static void marshal( Result result, Object object ) throws JAXBException {
+
         try {
-            Marshaller marshaller = getMarshaller( object.getClass() );
-            marshaller.marshal( object, outputStream );
+            CachedContext cachedContext = getCachedContext( object.getClass() );
+            Marshaller marshaller = cachedContext.acquireMarshaller();
+            marshaller.marshal( object, result );
+            cachedContext.releaseMarshaller( marshaller );
         }
         catch (JAXBException e) {
             JoJoMojo.getMojo().getLog().error( "", e );
@@ -126,22 +299,154 @@ public class JAXB {
 
     public static JAXBContext getJAXBContext( Class<?> clazz ) throws JAXBException {
 
-        JAXBContext jaxbContext = jaxbContexts.get( clazz );
-        if ( jaxbContext != null ) {
-            return jaxbContext;
+        return getCachedContext( clazz ).jaxbContext;
+    }
+
+    private static CachedContext getCachedContext( Class<?> clazz ) throws JAXBException {
+
+        final String packageName = clazz.getPackage().getName();
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        ContextKey contextKey = new ContextKey( packageName, classLoader );
+
+        Future<CachedContext> future = jaxbContexts.get( contextKey );
+        if ( future == null ) {
+
+            FutureTask<CachedContext> futureTask = new FutureTask<CachedContext>( new Callable<CachedContext>() {
+
+                @Override
+                public CachedContext call() throws Exception {
+
+                    return new CachedContext( JAXBContext.newInstance( packageName, classLoader ) );
+                }
+            } );
+
+            // only the first thread to get here builds the context, the rest wait on it
+            future = jaxbContexts.putIfAbsent( contextKey, futureTask );
+            if ( future == null ) {
+                future = futureTask;
+                futureTask.run();
+            }
+        }
+
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JAXBException( e );
+        }
+        catch (ExecutionException e) {
+            // let the next caller try again
+            jaxbContexts.remove( contextKey, future );
+            Throwable cause = e.getCause();
+            if ( cause instanceof JAXBException ) {
+                throw (JAXBException) cause;
+            }
+            throw new JAXBException( cause );
         }
-        jaxbContext = JAXBContext.newInstance( clazz.getPackage().getName(), Thread.currentThread().getContextClassLoader() );
-        jaxbContexts.put( clazz, jaxbContext );
-        return jaxbContext;
     }
 
+    /**
+     * Return a new {@link Unmarshaller} which the caller is free to configure.
+     * @param clazz
+     * @return
+     * @throws JAXBException
+     */
     public static Unmarshaller getUnmarshaller( Class<?> clazz ) throws JAXBException {
 
         return getJAXBContext( clazz ).createUnmarshaller();
     }
 
+    /**
+     * Return a new {@link Marshaller} which the caller is free to configure.
+     * @param clazz
+     * @return
+     * @throws JAXBException
+     */
     public static Marshaller getMarshaller( Class<?> clazz ) throws JAXBException {
 
         return getJAXBContext( clazz ).createMarshaller();
     }
+
+    private static final class ContextKey {
+
+        private final String packageName;
+        private final ClassLoader classLoader;
+
+        public ContextKey(String packageName, ClassLoader classLoader) {
+
+            this.packageName = packageName;
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public int hashCode() {
+
+            return packageName.hashCode() * 31 + System.identityHashCode( classLoader );
+        }
+
+        @Override
+        public boolean equals( Object object ) {
+
+            if ( !( object instanceof ContextKey ) ) {
+                return false;
+            }
+            ContextKey contextKey = (ContextKey) object;
+            return packageName.equals( contextKey.packageName ) && classLoader == contextKey.classLoader;
+        }
+    }
+
+    /**
+     * A {@link JAXBContext} with a small pool of idle {@link Marshaller}s and {@link Unmarshaller}s.
+     * Neither is thread safe, and neither is configured, so they can be reused between documents.
+     * The pools belong to the context rather than to threads, so nothing is left behind on worker
+     * threads once the context is no longer used.
+     */
+    private static final class CachedContext {
+
+        private final BlockingQueue<Marshaller> marshallers;
+        private final BlockingQueue<Unmarshaller> unmarshallers;
+
+        private final JAXBContext jaxbContext;
+
+        public CachedContext(JAXBContext jaxbContext) {
+
+            this.jaxbContext = jaxbContext;
+
+            int capacity = ThreadPoolService.getDefaultParallelism();
+            marshallers = new ArrayBlockingQueue<Marshaller>( capacity );
+            unmarshallers = new ArrayBlockingQueue<Unmarshaller>( capacity );
+        }
+
+        public Marshaller acquireMarshaller() throws JAXBException {
+
+            Marshaller marshaller = marshallers.poll();
+            if ( marshaller == null ) {
+                marshaller = jaxbContext.createMarshaller();
+                marshaller.setProperty( Marshaller.JAXB_ENCODING, ENCODING );
+            }
+            return marshaller;
+        }
+
+        public void releaseMarshaller( Marshaller marshaller ) {
+
+            // dropped if the pool is full
+            marshallers.offer( marshaller );
+        }
+
+        public Unmarshaller acquireUnmarshaller() throws JAXBException {
+
+            Unmarshaller unmarshaller = unmarshallers.poll();
+            if ( unmarshaller == null ) {
+                unmarshaller = jaxbContext.createUnmarshaller();
+            }
+            return unmarshaller;
+        }
+
+        public void releaseUnmarshaller( Unmarshaller unmarshaller ) {
+
+            // dropped if the pool is full
+            unmarshallers.offer( unmarshaller );
+        }
+    }
 }
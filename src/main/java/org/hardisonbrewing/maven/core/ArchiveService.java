@@ -24,12 +24,23 @@ import org.codehaus.plexus.archiver.ArchiverException;
 import org.codehaus.plexus.archiver.UnArchiver;
 import org.codehaus.plexus.archiver.manager.ArchiverManager;
 import org.codehaus.plexus.archiver.manager.NoSuchArchiverException;
+import org.codehaus.plexus.archiver.zip.AbstractZipUnArchiver;
+import org.hardisonbrewing.maven.core.archive.ZipCompressor;
+import org.hardisonbrewing.maven.core.archive.ZipExtractor;
+import org.hardisonbrewing.maven.core.archive.ZipTransformer;
 
 /**
  * Utility methods for handling archiving and unarchiving.
  */
 public class ArchiveService {
 
+    /**
+     * The name of the directory, in the target directory, that extraction markers are kept in.
+     */
+    public static final String MARKER_DIRECTORY_NAME = "hbc-unarchive";
+
+    private static final String MARKER_EXTENSION = ".marker";
+
     protected ArchiveService() {
 
         // do nothing
@@ -46,6 +57,44 @@ public class ArchiveService {
         unarchive( src, dest, getDefaultArchiverManager() );
     }
 
+    /**
+     * Archive the contents of a directory to a zip, deflating its entries in parallel. The entries
+     * are written in sorted order with a fixed timestamp, so the same tree always produces the same bytes.
+     * @param src The source directory.
+     * @param dest The destination zip, or jar, archive.
+     * @param level The compression level, from 1 to 9, {@link ZipCompressor#STORE} or {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}.
+     * @param parallelism The maximum number of entries to deflate at once.
+     * @throws ArchiverException
+     */
+    public static final void zip( File src, File dest, int level, int parallelism ) throws ArchiverException {
+
+        ZipCompressor zipCompressor = new ZipCompressor( level, parallelism );
+        try {
+            zipCompressor.compress( src, dest );
+        }
+        catch (IOException e) {
+            throw new ArchiverException( "Error creating zip " + dest.getAbsolutePath(), e );
+        }
+    }
+
+    /**
+     * Copy a zip archive to another, applying the transformer's drops, renames and rewrites,
+     * without extracting it to disk.
+     * @param src The source archive.
+     * @param dest The destination archive.
+     * @param zipTransformer
+     * @throws ArchiverException
+     */
+    public static final void transform( File src, File dest, ZipTransformer zipTransformer ) throws ArchiverException {
+
+        try {
+            zipTransformer.transform( src, dest );
+        }
+        catch (IOException e) {
+            throw new ArchiverException( "Error transforming " + src.getAbsolutePath() + " to " + dest.getAbsolutePath(), e );
+        }
+    }
+
     /**
      * Extract a {@link File} to the specified destination directory.
      * @param src The source {@link File}.
@@ -55,12 +104,40 @@ public class ArchiveService {
      */
     public static final void unarchive( File src, File dest, ArchiverManager archiverManager ) throws ArchiverException {
 
+        UnArchiver unArchiver;
         try {
-            unarchive( src, dest, getUnArchiver( src, archiverManager ) );
+            unArchiver = getUnArchiver( src, archiverManager );
         }
         catch (NoSuchArchiverException e) {
             throw new ArchiverException( e.getMessage(), e );
         }
+
+        // zip based archives skip the entries a previous extraction already wrote
+        if ( unArchiver instanceof AbstractZipUnArchiver ) {
+            unzip( src, dest, ThreadPoolService.getDefaultParallelism() );
+            return;
+        }
+
+        unarchive( src, dest, unArchiver );
+    }
+
+    /**
+     * Extract a zip based archive, inflating its entries in parallel and skipping
+     * the entries a previous extraction to the same directory already wrote.
+     * @param src The zip, or jar, archive.
+     * @param dest The destination directory.
+     * @param parallelism The maximum number of entries to inflate at once.
+     * @throws ArchiverException
+     */
+    public static final void unzip( File src, File dest, int parallelism ) throws ArchiverException {
+
+        ZipExtractor zipExtractor = new ZipExtractor( parallelism );
+        try {
+            zipExtractor.extract( src, dest, getExtractionMarkerFile( dest ) );
+        }
+        catch (IOException e) {
+            throw new ArchiverException( "Error while expanding " + src.getAbsolutePath(), e );
+        }
     }
 
     public static final void archive( File src, File dest ) throws ArchiverException {
@@ -140,4 +217,21 @@ public class ArchiveService {
 
         return archiverManager.getUnArchiver( FileUtils.getExtension( src ) );
     }
+
+    /**
+     * Return the extraction marker {@link File} for the specified destination directory.
+     * @param dest The destination directory.
+     * @return
+     */
+    public static final File getExtractionMarkerFile( File dest ) {
+
+        StringBuffer filePath = new StringBuffer();
+        filePath.append( TargetDirectoryService.getTargetDirectoryPath() );
+        filePath.append( File.separator );
+        filePath.append( MARKER_DIRECTORY_NAME );
+        filePath.append( File.separator );
+        filePath.append( Integer.toHexString( dest.getAbsolutePath().hashCode() ) );
+        filePath.append( MARKER_EXTENSION );
+        return new File( filePath.toString() );
+    }
 }
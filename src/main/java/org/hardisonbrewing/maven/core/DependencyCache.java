@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectBuildingException;
+
+/**
+ * Remembers the resolved {@link Artifact}s and built {@link MavenProject}s for a {@link MavenSession},
+ * keyed by groupId, artifactId, version, type and classifier. Each is resolved or built once, by
+ * the first thread to ask for it, while other threads asking for it wait.
+ * <p>
+ * The cached {@link Artifact} is shared, so it keeps the scope of the first {@link Dependency} it was
+ * resolved for. It should be treated as read only.
+ * </p>
+ * @see DependencyService#getDependencyCache()
+ */
+public class DependencyCache {
+
+    private final ConcurrentMap<String, Future<Artifact>> artifacts = new ConcurrentHashMap<String, Future<Artifact>>();
+    private final ConcurrentMap<String, Future<MavenProject>> projects = new ConcurrentHashMap<String, Future<MavenProject>>();
+
+    private final AtomicInteger artifactHits = new AtomicInteger();
+    private final AtomicInteger artifactMisses = new AtomicInteger();
+    private final AtomicInteger projectHits = new AtomicInteger();
+    private final AtomicInteger projectMisses = new AtomicInteger();
+
+    private final MavenSession mavenSession;
+
+    public DependencyCache(MavenSession mavenSession) {
+
+        this.mavenSession = mavenSession;
+    }
+
+    /**
+     * Return the {@link MavenSession} this cache belongs to.
+     * @return
+     */
+    public MavenSession getMavenSession() {
+
+        return mavenSession;
+    }
+
+    /**
+     * Return the resolved {@link Artifact} for the specified {@link Dependency}.
+     * @param dependency
+     * @return
+     * @throws ArtifactResolutionException
+     * @throws ArtifactNotFoundException
+     */
+    public Artifact getResolvedArtifact( final Dependency dependency ) throws ArtifactResolutionException, ArtifactNotFoundException {
+
+        try {
+            return get( artifacts, getKey( dependency ), artifactHits, artifactMisses, new Callable<Artifact>() {
+
+                @Override
+                public Artifact call() throws Exception {
+
+                    return DependencyService.createResolvedArtifact( dependency );
+                }
+            } );
+        }
+        catch (ArtifactResolutionException e) {
+            throw e;
+        }
+        catch (ArtifactNotFoundException e) {
+            throw e;
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * Return the {@link MavenProject} for the specified {@link Artifact}.
+     * @param artifact
+     * @return
+     * @throws ProjectBuildingException
+     */
+    public MavenProject getProject( final Artifact artifact ) throws ProjectBuildingException {
+
+        try {
+            return get( projects, getKey( artifact ), projectHits, projectMisses, new Callable<MavenProject>() {
+
+                @Override
+                public MavenProject call() throws Exception {
+
+                    return ProjectService.getProject( artifact );
+                }
+            } );
+        }
+        catch (ProjectBuildingException e) {
+            throw e;
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static <V> V get( ConcurrentMap<String, Future<V>> map, String key, AtomicInteger hits, AtomicInteger misses, Callable<V> callable ) throws Exception {
+
+        Future<V> future = map.get( key );
+        if ( future == null ) {
+            FutureTask<V> futureTask = new FutureTask<V>( callable );
+            future = map.putIfAbsent( key, futureTask );
+            if ( future == null ) {
+                misses.incrementAndGet();
+                future = futureTask;
+                futureTask.run();
+            }
+            else {
+                hits.incrementAndGet();
+            }
+        }
+        else {
+            hits.incrementAndGet();
+        }
+
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        catch (ExecutionException e) {
+            // let the next caller try again
+            map.remove( key, future );
+            Throwable cause = e.getCause();
+            if ( cause instanceof Exception ) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Return the cache key for the specified {@link Dependency}.
+     * @param dependency
+     * @return
+     */
+    public static String getKey( Dependency dependency ) {
+
+        return getKey( dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion(), dependency.getType(), dependency.getClassifier() );
+    }
+
+    /**
+     * Return the cache key for the specified {@link Artifact}.
+     * @param artifact
+     * @return
+     */
+    public static String getKey( Artifact artifact ) {
+
+        return getKey( artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), artifact.getType(), artifact.getClassifier() );
+    }
+
+    private static String getKey( String groupId, String artifactId, String version, String type, String classifier ) {
+
+        StringBuffer stringBuffer = new StringBuffer();
+        stringBuffer.append( groupId );
+        stringBuffer.append( ':' );
+        stringBuffer.append( artifactId );
+        stringBuffer.append( ':' );
+        stringBuffer.append( version );
+        stringBuffer.append( ':' );
+        stringBuffer.append( type );
+        if ( classifier != null ) {
+            stringBuffer.append( ':' );
+            stringBuffer.append( classifier );
+        }
+        return stringBuffer.toString();
+    }
+
+    public int getArtifactHits() {
+
+        return artifactHits.get();
+    }
+
+    public int getArtifactMisses() {
+
+        return artifactMisses.get();
+    }
+
+    public int getProjectHits() {
+
+        return projectHits.get();
+    }
+
+    public int getProjectMisses() {
+
+        return projectMisses.get();
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuffer stringBuffer = new StringBuffer();
+        stringBuffer.append( "artifacts[hits=" );
+        stringBuffer.append( artifactHits );
+        stringBuffer.append( ", misses=" );
+        stringBuffer.append( artifactMisses );
+        stringBuffer.append( "], projects[hits=" );
+        stringBuffer.append( projectHits );
+        stringBuffer.append( ", misses=" );
+        stringBuffer.append( projectMisses );
+        stringBuffer.append( "]" );
+        return stringBuffer.toString();
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.maven.artifact.Artifact;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Copies {@link Artifact} files to a directory on a worker pool.
+ * <p>
+ * A file already in the directory with the same size and last modified time as the artifact is
+ * left as it is. Otherwise the artifact is copied through a {@link FileChannel}, or hard linked into
+ * the directory if {@link #setLink(boolean)} allows it and the file system supports it. When more
+ * than one artifact has the same file name, only the last is copied, as it would have overwritten
+ * the others. One summary line is logged for the whole copy.
+ * </p>
+ */
+public class DependencyCopier {
+
+    private static final int SKIPPED = 0;
+    private static final int LINKED = 1;
+    private static final int COPIED = 2;
+
+    private final int parallelism;
+
+    private boolean link;
+
+    public DependencyCopier() {
+
+        this( ThreadPoolService.getDefaultParallelism() );
+    }
+
+    /**
+     * @param parallelism The maximum number of artifacts to copy at once.
+     */
+    public DependencyCopier(int parallelism) {
+
+        if ( parallelism < 1 ) {
+            throw new IllegalArgumentException( "Parallelism must be >= 1." );
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Set whether artifacts may be hard linked rather than copied. A linked file shares its
+     * content with the local repository, so must be replaced rather than modified in place.
+     * Artifacts are copied by default.
+     * @param link
+     */
+    public void setLink( boolean link ) {
+
+        this.link = link;
+    }
+
+    /**
+     * Copy the {@link Artifact} files to the specified destination directory.
+     * @param artifacts
+     * @param dest The destination directory.
+     * @throws IOException
+     */
+    public void copy( Collection<Artifact> artifacts, File dest ) throws IOException {
+
+        if ( artifacts.isEmpty() ) {
+            return;
+        }
+
+        dest.mkdirs();
+
+        long start = System.currentTimeMillis();
+        int[] counts = new int[3];
+
+        // one task per destination file, so no two tasks write the same file
+        Map<String, File> sources = new LinkedHashMap<String, File>();
+        for (Artifact artifact : artifacts) {
+            File source = artifact.getFile();
+            String name = source == null ? artifact.getId() : source.getName();
+            sources.remove( name );
+            sources.put( name, source );
+        }
+
+        ExecutorService executorService = ThreadPoolService.newThreadPool( "hbc-copy", Math.min( parallelism, sources.size() ) );
+        try {
+            CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>( executorService );
+            for (File source : sources.values()) {
+                completionService.submit( new CopyTask( source, dest, link ) );
+            }
+            for (int i = 0; i < sources.size(); i++) {
+                counts[take( completionService )]++;
+            }
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+
+        StringBuffer stringBuffer = new StringBuffer();
+        stringBuffer.append( "Copied " );
+        stringBuffer.append( sources.size() );
+        stringBuffer.append( " dependencies to " );
+        stringBuffer.append( dest );
+        stringBuffer.append( " (" );
+        stringBuffer.append( counts[COPIED] );
+        stringBuffer.append( " copied, " );
+        stringBuffer.append( counts[LINKED] );
+        stringBuffer.append( " linked, " );
+        stringBuffer.append( counts[SKIPPED] );
+        stringBuffer.append( " up to date) in " );
+        stringBuffer.append( System.currentTimeMillis() - start );
+        stringBuffer.append( "ms" );
+        JoJoMojo.getMojo().getLog().info( stringBuffer.toString() );
+    }
+
+    private static int take( CompletionService<Integer> completionService ) throws IOException {
+
+        try {
+            return completionService.take().get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while copying dependencies" );
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException( cause );
+        }
+    }
+
+    private static final class CopyTask implements Callable<Integer> {
+
+        private final File source;
+        private final File dest;
+        private final boolean link;
+
+        public CopyTask(File source, File dest, boolean link) {
+
+            this.source = source;
+            this.dest = dest;
+            this.link = link;
+        }
+
+        @Override
+        public Integer call() throws IOException {
+
+            if ( source == null || !source.exists() ) {
+                throw new IllegalStateException( ( source == null ? "Artifact file" : source.getAbsolutePath() ) + " does not exist." );
+            }
+
+            File destFile = new File( dest, source.getName() );
+
+            // project artifacts in a reactor build may still be directories
+            if ( source.isDirectory() ) {
+                destFile.mkdir();
+                FileUtils.copyDirectoryStructure( source, destFile );
+                destFile.setLastModified( source.lastModified() );
+                return COPIED;
+            }
+
+            if ( destFile.isFile() && destFile.length() == source.length() && destFile.lastModified() == source.lastModified() ) {
+                return SKIPPED;
+            }
+
+            // never write through an earlier link into the local repository
+            if ( destFile.exists() && !destFile.delete() ) {
+                throw new IOException( "Unable to replace " + destFile );
+            }
+
+            if ( link && FileUtils.createLink( destFile, source ) ) {
+                return LINKED;
+            }
+
+            copy( source, destFile );
+            destFile.setLastModified( source.lastModified() );
+            return COPIED;
+        }
+
+        private static void copy( File source, File destFile ) throws IOException {
+
+            FileInputStream inputStream = null;
+            FileOutputStream outputStream = null;
+            try {
+                inputStream = new FileInputStream( source );
+                outputStream = new FileOutputStream( destFile );
+
+                FileChannel input = inputStream.getChannel();
+                FileChannel output = outputStream.getChannel();
+
+                long size = input.size();
+                long position = 0;
+                while (position < size) {
+                    position += input.transferTo( position, size - position, output );
+                }
+            }
+            finally {
+                IOUtil.close( outputStream );
+                IOUtil.close( inputStream );
+            }
+        }
+    }
+}
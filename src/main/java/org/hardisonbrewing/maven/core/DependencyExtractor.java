@@ -0,0 +1,395 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Extracts a tree of {@link Dependency} {@link Artifact}s on a worker pool. Each artifact is
+ * extracted to a directory named for its artifactId, nested in the directory of the artifact
+ * that depends on it.
+ * <p>
+ * The whole tree is resolved first, resolving artifacts and building their {@link MavenProject}s
+ * concurrently. The artifacts are then extracted concurrently, except that artifacts whose
+ * directories overlap are extracted in the same order as a depth first walk of the tree, so
+ * later artifacts overwrite earlier ones as they did when extracted one at a time.
+ * </p>
+ * Artifacts and projects come from the session's {@link DependencyCache}. An artifact that appears
+ * more than once in the tree is extracted once, to {@link #STAGING_DIRECTORY_NAME} in the target
+ * directory, and copied from there to each of its directories. The staging directory is kept
+ * between builds, so an unchanged artifact is not extracted again, and only files that differ from
+ * the staged ones are copied.
+ */
+public class DependencyExtractor {
+
+    /**
+     * The name of the directory, in the target directory, that shared artifacts are extracted to.
+     */
+    public static final String STAGING_DIRECTORY_NAME = "hbc-dependencies";
+
+    private final int parallelism;
+
+    public DependencyExtractor() {
+
+        this( ThreadPoolService.getDefaultParallelism() );
+    }
+
+    /**
+     * @param parallelism The maximum number of artifacts to resolve or extract at once.
+     */
+    public DependencyExtractor(int parallelism) {
+
+        if ( parallelism < 1 ) {
+            throw new IllegalArgumentException( "Parallelism must be >= 1." );
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Extract the {@link Dependency} {@link Artifact}s, and their dependencies, to the specified destination directory.
+     * @param dependencies
+     * @param dest The destination directory.
+     * @throws Exception
+     */
+    public void extract( List<Dependency> dependencies, File dest ) throws Exception {
+
+        if ( dependencies.isEmpty() ) {
+            return;
+        }
+
+        DependencyCache dependencyCache = DependencyService.getDependencyCache();
+        File stagingDirectory = new File( TargetDirectoryService.getTargetDirectory(), STAGING_DIRECTORY_NAME );
+
+        ExecutorService executorService = ThreadPoolService.newThreadPool( "hbc-dependency", parallelism );
+        try {
+            List<Node> nodes = resolve( dependencies, dest, dependencyCache, executorService );
+            int staged = stage( nodes, stagingDirectory );
+            unarchive( nodes, executorService );
+
+            Log log = JoJoMojo.getMojo().getLog();
+            if ( log.isDebugEnabled() ) {
+                log.debug( "Extracted " + nodes.size() + " dependencies, " + staged + " shared. Dependency cache: " + dependencyCache );
+            }
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Resolve the tree, returning its nodes in depth first order.
+     */
+    private List<Node> resolve( List<Dependency> dependencies, File dest, DependencyCache dependencyCache, ExecutorService executorService ) throws Exception {
+
+        List<Node> roots = createNodes( dependencies, dest );
+
+        CompletionService<Node> completionService = new ExecutorCompletionService<Node>( executorService );
+        int pending = 0;
+
+        for (Node node : roots) {
+            completionService.submit( new ResolveTask( node, dependencyCache ) );
+            pending++;
+        }
+
+        while (pending > 0) {
+
+            Node node = take( completionService );
+            pending--;
+
+            for (Node child : node.children) {
+                completionService.submit( new ResolveTask( child, dependencyCache ) );
+                pending++;
+            }
+        }
+
+        List<Node> nodes = new ArrayList<Node>();
+        addDepthFirst( roots, nodes );
+        return nodes;
+    }
+
+    /**
+     * Give the nodes that share an artifact a common {@link Stage}.
+     * @return The number of shared artifacts.
+     */
+    private int stage( List<Node> nodes, File stagingDirectory ) {
+
+        Map<String, List<Node>> nodesByKey = new HashMap<String, List<Node>>();
+        for (Node node : nodes) {
+            List<Node> _nodes = nodesByKey.get( node.key );
+            if ( _nodes == null ) {
+                _nodes = new ArrayList<Node>( 1 );
+                nodesByKey.put( node.key, _nodes );
+            }
+            _nodes.add( node );
+        }
+
+        int staged = 0;
+
+        for (List<Node> _nodes : nodesByKey.values()) {
+
+            if ( _nodes.size() == 1 ) {
+                continue;
+            }
+
+            Node node = _nodes.get( 0 );
+            File dir = new File( stagingDirectory, node.key.replace( ':', '_' ) );
+            Stage stage = new Stage( node.artifact.getFile(), dir );
+
+            for (Node _node : _nodes) {
+                _node.stage = stage;
+            }
+            staged++;
+        }
+
+        return staged;
+    }
+
+    private void unarchive( List<Node> nodes, ExecutorService executorService ) throws Exception {
+
+        // a node waits on every earlier node which shares part of its directory
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get( i );
+            for (int j = 0; j < i; j++) {
+                Node predecessor = nodes.get( j );
+                if ( overlaps( predecessor.destPath, node.destPath ) ) {
+                    predecessor.successors.add( node );
+                    node.waiting++;
+                }
+            }
+        }
+
+        CompletionService<Node> completionService = new ExecutorCompletionService<Node>( executorService );
+
+        for (Node node : nodes) {
+            if ( node.waiting == 0 ) {
+                completionService.submit( new UnarchiveTask( node ) );
+            }
+        }
+
+        for (int remaining = nodes.size(); remaining > 0; remaining--) {
+
+            Node node = take( completionService );
+
+            for (Node successor : node.successors) {
+                if ( --successor.waiting == 0 ) {
+                    completionService.submit( new UnarchiveTask( successor ) );
+                }
+            }
+        }
+    }
+
+    private static List<Node> createNodes( List<Dependency> dependencies, File dest ) {
+
+        if ( dependencies == null || dependencies.isEmpty() ) {
+            return Collections.emptyList();
+        }
+
+        List<Node> nodes = new ArrayList<Node>( dependencies.size() );
+        for (Dependency dependency : dependencies) {
+            nodes.add( new Node( dependency, new File( dest, dependency.getArtifactId() ) ) );
+        }
+        return nodes;
+    }
+
+    private static void addDepthFirst( List<Node> nodes, List<Node> list ) {
+
+        for (Node node : nodes) {
+            list.add( node );
+            addDepthFirst( node.children, list );
+        }
+    }
+
+    private static boolean overlaps( String path1, String path2 ) {
+
+        return path1.startsWith( path2 ) || path2.startsWith( path1 );
+    }
+
+    private static Node take( CompletionService<Node> completionService ) throws Exception {
+
+        try {
+            return completionService.take().get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof Exception ) {
+                throw (Exception) cause;
+            }
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Node {
+
+        private final List<Node> successors = new ArrayList<Node>();
+
+        private final Dependency dependency;
+        private final String key;
+        private final File dest;
+        private final String destPath;
+
+        private Artifact artifact;
+        private List<Node> children;
+        private Stage stage;
+        private int waiting;
+
+        public Node(Dependency dependency, File dest) {
+
+            this.dependency = dependency;
+            this.dest = dest;
+
+            key = DependencyCache.getKey( dependency );
+
+            // the trailing separator keeps "a" from overlapping "ab"
+            destPath = dest.getAbsolutePath() + File.separator;
+        }
+    }
+
+    private static final class ResolveTask implements Callable<Node> {
+
+        private final Node node;
+        private final DependencyCache dependencyCache;
+
+        public ResolveTask(Node node, DependencyCache dependencyCache) {
+
+            this.node = node;
+            this.dependencyCache = dependencyCache;
+        }
+
+        @Override
+        public Node call() throws Exception {
+
+            node.artifact = dependencyCache.getResolvedArtifact( node.dependency );
+            MavenProject mavenProject = dependencyCache.getProject( node.artifact );
+
+            @SuppressWarnings( "unchecked" )
+            List<Dependency> dependencies = mavenProject.getDependencies();
+            node.children = createNodes( dependencies, node.dest );
+            return node;
+        }
+    }
+
+    private static final class UnarchiveTask implements Callable<Node> {
+
+        private final Node node;
+
+        public UnarchiveTask(Node node) {
+
+            this.node = node;
+        }
+
+        @Override
+        public Node call() throws Exception {
+
+            if ( node.stage == null ) {
+                ArchiveService.unarchive( node.artifact.getFile(), node.dest );
+            }
+            else {
+                File dir = node.stage.extract();
+                copyChangedFiles( dir, node.dest );
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Copy the files in the source directory that differ in size or last modified time from those
+     * in the destination directory. The copies are not links, as later artifacts may overwrite them.
+     */
+    private static void copyChangedFiles( File src, File dest ) throws IOException {
+
+        File[] files = src.listFiles();
+        if ( files == null ) {
+            return;
+        }
+
+        dest.mkdirs();
+
+        for (File file : files) {
+            File destFile = new File( dest, file.getName() );
+            if ( file.isDirectory() ) {
+                copyChangedFiles( file, destFile );
+            }
+            else if ( !destFile.isFile() || destFile.length() != file.length() || destFile.lastModified() != file.lastModified() ) {
+                // not FileUtils.copyFile, which logs every file
+                org.codehaus.plexus.util.FileUtils.copyFile( file, destFile );
+                destFile.setLastModified( file.lastModified() );
+            }
+        }
+    }
+
+    /**
+     * Extracts a shared artifact once, for the first node to need it. Other nodes wait for it.
+     */
+    private static final class Stage {
+
+        private final FutureTask<File> futureTask;
+
+        public Stage(final File src, final File dir) {
+
+            futureTask = new FutureTask<File>( new Callable<File>() {
+
+                @Override
+                public File call() throws Exception {
+
+                    // the extraction marker skips the work a previous build already did
+                    ArchiveService.unarchive( src, dir );
+                    return dir;
+                }
+            } );
+        }
+
+        public File extract() throws Exception {
+
+            futureTask.run();
+
+            try {
+                return futureTask.get();
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if ( cause instanceof Exception ) {
+                    throw (Exception) cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
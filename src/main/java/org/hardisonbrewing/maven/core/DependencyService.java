@@ -18,7 +18,7 @@ package org.hardisonbrewing.maven.core;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -32,15 +32,17 @@ import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
 import org.apache.maven.artifact.resolver.ArtifactResolutionException;
 import org.apache.maven.artifact.resolver.ArtifactResolver;
 import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.ProjectBuildingException;
 import org.apache.maven.project.artifact.ProjectArtifactMetadata;
 import org.codehaus.plexus.archiver.ArchiverException;
-import org.codehaus.plexus.util.FileUtils;
 
 public class DependencyService {
 
+    private static DependencyCache dependencyCache;
+
     protected DependencyService() {
 
         // do nothing
@@ -91,6 +93,19 @@ public class DependencyService {
         return JoJoMojo.getMojo().getRemoteRepositories();
     }
 
+    /**
+     * Return the {@link DependencyCache} for the current {@link MavenSession}.
+     * @return
+     */
+    public static final synchronized DependencyCache getDependencyCache() {
+
+        MavenSession mavenSession = JoJoMojo.getMojo().getMavenSession();
+        if ( dependencyCache == null || dependencyCache.getMavenSession() != mavenSession ) {
+            dependencyCache = new DependencyCache( mavenSession );
+        }
+        return dependencyCache;
+    }
+
     /**
      * Copy all {@link Dependency} {@link Artifact}s to the specified destination directory.
      * @param dest The destination directory.
@@ -98,15 +113,41 @@ public class DependencyService {
      */
     public static final void copyDependencies( File dest ) throws Exception {
 
+        copyDependencies( dest, ThreadPoolService.getDefaultParallelism() );
+    }
+
+    /**
+     * Copy all {@link Dependency} {@link Artifact}s to the specified destination directory, in
+     * parallel and skipping those already there.
+     * @param dest The destination directory.
+     * @param parallelism The maximum number of artifacts to copy at once.
+     * @throws Exception
+     * @see DependencyCopier
+     */
+    public static final void copyDependencies( File dest, int parallelism ) throws Exception {
+
+        copyDependencies( dest, parallelism, false );
+    }
+
+    /**
+     * Copy all {@link Dependency} {@link Artifact}s to the specified destination directory, in
+     * parallel and skipping those already there.
+     * @param dest The destination directory.
+     * @param parallelism The maximum number of artifacts to copy at once.
+     * @param link True to hard link the artifacts where possible. The linked files must then not be
+     * modified in place, as that would modify the local repository.
+     * @throws Exception
+     * @see DependencyCopier#setLink(boolean)
+     */
+    public static final void copyDependencies( File dest, int parallelism, boolean link ) throws Exception {
+
         MavenProject mavenProject = ProjectService.getProject();
 
         Set<Artifact> artifacts = mavenProject.getDependencyArtifacts();
-        Iterator<Artifact> iterator = artifacts.iterator();
 
-        while (iterator.hasNext()) {
-            Artifact artifact = iterator.next();
-            FileUtils.copyFileToDirectory( artifact.getFile(), dest );
-        }
+        DependencyCopier dependencyCopier = new DependencyCopier( parallelism );
+        dependencyCopier.setLink( link );
+        dependencyCopier.copy( artifacts, dest );
     }
 
     /**
@@ -133,12 +174,27 @@ public class DependencyService {
      */
     public static final void extractDependencies( MavenProject mavenProject, File dest ) throws Exception {
 
+        extractDependencies( mavenProject, dest, ThreadPoolService.getDefaultParallelism() );
+    }
+
+    /**
+     * Extract the contents of all {@link Dependency} {@link Artifact}s to the specified destination directory.
+     * @param mavenProject
+     * @param dest The destination directory.
+     * @param parallelism The maximum number of artifacts to resolve or extract at once.
+     * @throws ArchiverException
+     * @throws ProjectBuildingException
+     * @throws ArtifactResolutionException
+     * @throws ArtifactNotFoundException
+     * @see DependencyExtractor
+     */
+    public static final void extractDependencies( MavenProject mavenProject, File dest, int parallelism ) throws Exception {
+
+        @SuppressWarnings( "unchecked" )
         List<Dependency> dependencies = mavenProject.getDependencies();
-        Iterator<Dependency> iterator = dependencies.iterator();
 
-        while (iterator.hasNext()) {
-            extractDependency( iterator.next(), dest );
-        }
+        DependencyExtractor dependencyExtractor = new DependencyExtractor( parallelism );
+        dependencyExtractor.extract( dependencies, dest );
     }
 
     /**
@@ -152,18 +208,8 @@ public class DependencyService {
      */
     public static final void extractDependency( Dependency dependency, File dest ) throws Exception {
 
-        Artifact artifact = createResolvedArtifact( dependency );
-        File src = artifact.getFile();
-
-        StringBuffer destPath = new StringBuffer();
-        destPath.append( dest );
-        destPath.append( File.separator );
-        destPath.append( artifact.getArtifactId() );
-        dest = new File( destPath.toString() );
-
-        ArchiveService.unarchive( src, dest );
-
-        extractDependencies( ProjectService.getProject( artifact ), dest );
+        DependencyExtractor dependencyExtractor = new DependencyExtractor();
+        dependencyExtractor.extract( Collections.singletonList( dependency ), dest );
     }
 
     /**
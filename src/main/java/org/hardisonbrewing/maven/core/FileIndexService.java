@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.execution.MavenSession;
+import org.hardisonbrewing.maven.core.scanner.FileIndex;
+import org.hardisonbrewing.maven.core.scanner.FileScanner;
+import org.hardisonbrewing.maven.core.scanner.ParallelFileScanner;
+
+/**
+ * Utility methods for listing files through a {@link FileIndex} persisted under the
+ * target directory, so later builds only list the directories that have changed.
+ */
+public class FileIndexService {
+
+    /**
+     * The name of the directory, under the target directory, holding the index files.
+     */
+    public static final String INDEX_DIRECTORY_NAME = "hbc-file-index";
+
+    private static final String INDEX_EXTENSION = ".idx";
+
+    private static final Map<String, FileIndex> fileIndexes = new HashMap<String, FileIndex>();
+
+    private static MavenSession fileIndexSession;
+
+    protected FileIndexService() {
+
+        // do nothing
+    }
+
+    /**
+     * Same as {@link FileUtils#listFilePathsRecursive(File, String[], String[])}, reusing the
+     * unchanged directory listings from the {@link FileIndex} for the specified directory.
+     * @param file The directory to scan.
+     * @param includes
+     * @param excludes
+     * @return
+     */
+    public static final String[] listFilePathsRecursive( File file, String[] includes, String[] excludes ) {
+
+        FileScanner fileScanner = FileUtils.getFileScanner();
+        if ( !( fileScanner instanceof ParallelFileScanner ) ) {
+            return FileUtils.listFilePathsRecursive( file, includes, excludes );
+        }
+
+        FileIndex fileIndex = getFileIndex( file );
+        String[] filePaths = ( (ParallelFileScanner) fileScanner ).getIncludedFiles( file, includes, excludes, fileIndex );
+        storeFileIndex( fileIndex );
+
+        return FileUtils.prependBasedir( file, filePaths );
+    }
+
+    /**
+     * Same as {@link FileUtils#listFilePathsRecursive(File)}, reusing the unchanged directory
+     * listings from the {@link FileIndex} for the specified directory.
+     * @param file
+     * @return
+     */
+    public static final String[] listFilePathsRecursive( File file ) {
+
+        if ( !file.exists() ) {
+            return new String[0];
+        }
+
+        FileIndex fileIndex = getFileIndex( file );
+        String[] filePaths = fileIndex.listFilePathsRecursive();
+        storeFileIndex( fileIndex );
+        return filePaths;
+    }
+
+    /**
+     * Return the {@link FileIndex} for the specified root directory, loading it from the
+     * target directory the first time it is requested in the current {@link MavenSession}.
+     * @param root The root directory.
+     * @return
+     */
+    public static final FileIndex getFileIndex( File root ) {
+
+        String key = root.getAbsolutePath();
+
+        synchronized (fileIndexes) {
+
+            MavenSession mavenSession = JoJoMojo.getMojo().getMavenSession();
+            if ( fileIndexSession != mavenSession ) {
+                fileIndexes.clear();
+                fileIndexSession = mavenSession;
+            }
+
+            FileIndex fileIndex = fileIndexes.get( key );
+            if ( fileIndex != null ) {
+                return fileIndex;
+            }
+
+            File indexFile = getFileIndexFile( root );
+
+            try {
+                fileIndex = FileIndex.load( indexFile, root );
+            }
+            catch (IOException e) {
+                JoJoMojo.getMojo().getLog().debug( "Unable to read file index: " + indexFile );
+                fileIndex = new FileIndex( root );
+            }
+
+            fileIndexes.put( key, fileIndex );
+            return fileIndex;
+        }
+    }
+
+    /**
+     * Write the specified {@link FileIndex} to the target directory if it has changed.
+     * @param fileIndex
+     */
+    public static final void storeFileIndex( FileIndex fileIndex ) {
+
+        if ( !fileIndex.isModified() ) {
+            return;
+        }
+
+        File indexFile = getFileIndexFile( fileIndex.getRoot() );
+
+        try {
+            fileIndex.store( indexFile );
+        }
+        catch (IOException e) {
+            JoJoMojo.getMojo().getLog().warn( "Unable to write file index: " + indexFile );
+        }
+    }
+
+    /**
+     * Return the index {@link File} for the specified root directory.
+     * @param root The root directory.
+     * @return
+     */
+    public static final File getFileIndexFile( File root ) {
+
+        StringBuffer filePath = new StringBuffer();
+        filePath.append( TargetDirectoryService.getTargetDirectoryPath() );
+        filePath.append( File.separator );
+        filePath.append( INDEX_DIRECTORY_NAME );
+        filePath.append( File.separator );
+        filePath.append( Integer.toHexString( root.getAbsolutePath().hashCode() ) );
+        filePath.append( INDEX_EXTENSION );
+        return new File( filePath.toString() );
+    }
+}
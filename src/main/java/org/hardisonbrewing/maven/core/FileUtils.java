@@ -17,7 +17,13 @@
 package org.hardisonbrewing.maven.core;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -26,6 +32,10 @@ import java.util.List;
 
 import org.codehaus.plexus.archiver.manager.NoSuchArchiverException;
 import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.IOUtil;
+import org.hardisonbrewing.maven.core.scanner.FileScanner;
+import org.hardisonbrewing.maven.core.scanner.LastModifiedScanner;
+import org.hardisonbrewing.maven.core.scanner.ParallelFileScanner;
 
 public class FileUtils extends org.codehaus.plexus.util.FileUtils {
 
@@ -43,6 +53,31 @@ public class FileUtils extends org.codehaus.plexus.util.FileUtils {
         ignoreFiles.toArray( IGNORE_FILES );
     }
 
+    private static final Method TO_PATH;
+    private static final Method CREATE_LINK;
+
+    static {
+
+        // java.nio.file is only available from Java 7
+        Method toPath = null;
+        Method createLink = null;
+        try {
+            Class<?> pathClass = Class.forName( "java.nio.file.Path" );
+            Class<?> filesClass = Class.forName( "java.nio.file.Files" );
+            toPath = File.class.getMethod( "toPath" );
+            createLink = filesClass.getMethod( "createLink", pathClass, pathClass );
+        }
+        catch (Exception e) {
+            toPath = null;
+            createLink = null;
+        }
+        TO_PATH = toPath;
+        CREATE_LINK = createLink;
+    }
+
+    private static FileScanner fileScanner = new ParallelFileScanner();
+    private static final LastModifiedScanner lastModifiedScanner = new LastModifiedScanner();
+
     protected FileUtils() {
 
         // do nothing
@@ -108,6 +143,87 @@ public class FileUtils extends org.codehaus.plexus.util.FileUtils {
         destFile.setLastModified( source.lastModified() );
     }
 
+    /**
+     * Create a hard link to an existing file. Links are only supported from Java 7, and only
+     * within one file system, so callers must be prepared to copy the file instead.
+     * @param link The link to create, which must not exist.
+     * @param existing The existing file.
+     * @return true if the link was created.
+     */
+    public static final boolean createLink( File link, File existing ) {
+
+        if ( CREATE_LINK == null ) {
+            return false;
+        }
+
+        try {
+            CREATE_LINK.invoke( null, TO_PATH.invoke( link ), TO_PATH.invoke( existing ) );
+            return true;
+        }
+        catch (InvocationTargetException e) {
+            // not supported by the file system, or the files are on different file systems
+            return false;
+        }
+        catch (IllegalAccessException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write the bytes to the specified {@link File}, unless it already holds exactly those bytes.
+     * @param file
+     * @param bytes
+     * @return true if the file was written.
+     * @throws IOException
+     */
+    public static final boolean writeIfChanged( File file, byte[] bytes ) throws IOException {
+
+        if ( file.isFile() && file.length() == bytes.length && contentEquals( file, bytes ) ) {
+            return false;
+        }
+
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream( file );
+            outputStream.write( bytes );
+        }
+        finally {
+            IOUtil.close( outputStream );
+        }
+        return true;
+    }
+
+    private static final boolean contentEquals( File file, byte[] bytes ) throws IOException {
+
+        byte[] buffer = new byte[Math.min( bytes.length, 8192 )];
+        InputStream inputStream = null;
+
+        try {
+            inputStream = new FileInputStream( file );
+
+            int offset = 0;
+            while (offset < bytes.length) {
+
+                int length = inputStream.read( buffer, 0, Math.min( buffer.length, bytes.length - offset ) );
+                if ( length == -1 ) {
+                    return false;
+                }
+
+                for (int i = 0; i < length; i++) {
+                    if ( buffer[i] != bytes[offset + i] ) {
+                        return false;
+                    }
+                }
+                offset += length;
+            }
+
+            return inputStream.read() == -1;
+        }
+        finally {
+            IOUtil.close( inputStream );
+        }
+    }
+
     /**
      * Return the extenstion type for the specified {@link File}.
      * @param file The {@link File} to return the extenstion type of.
@@ -263,20 +379,22 @@ public class FileUtils extends org.codehaus.plexus.util.FileUtils {
         if ( !file.isDirectory() ) {
             return file.lastModified();
         }
-        return lastModifiedRecursive0( file, 0 );
+        return lastModifiedScanner.lastModified( file );
     }
 
-    private static final long lastModifiedRecursive0( File file, long lastModified ) {
+    /**
+     * Check if the specified file, or any file below it if it is a directory, was modified
+     * after the specified time. Directories are only scanned until the first such file is found.
+     * @param file
+     * @param time The time in milliseconds since the epoch.
+     * @return
+     */
+    public static final boolean isModifiedSince( File file, long time ) {
 
         if ( !file.isDirectory() ) {
-            return Math.max( lastModified, file.lastModified() );
-        }
-
-        for (File _file : file.listFiles()) {
-            lastModified = lastModifiedRecursive0( _file, lastModified );
+            return file.lastModified() > time;
         }
-
-        return lastModified;
+        return lastModifiedScanner.isModifiedSince( file, time );
     }
 
     public static final String trimSeperators( String filePath ) {
@@ -370,13 +488,15 @@ public class FileUtils extends org.codehaus.plexus.util.FileUtils {
 
     public static String[] listFilePathsRecursive( File file, String[] includes, String[] excludes ) {
 
-        DirectoryScanner scanner = buildScanner( file, includes, excludes );
-        scanner.scan();
+        String[] filePaths = fileScanner.getIncludedFiles( file, includes, excludes );
+        return prependBasedir( file, filePaths );
+    }
+
+    static final String[] prependBasedir( File basedir, String[] filePaths ) {
 
-        String[] filePaths = scanner.getIncludedFiles();
         for (int i = 0; i < filePaths.length; i++) {
             StringBuffer stringBuffer = new StringBuffer();
-            stringBuffer.append( file );
+            stringBuffer.append( basedir );
             stringBuffer.append( File.separator );
             stringBuffer.append( filePaths[i] );
             filePaths[i] = stringBuffer.toString();
@@ -402,12 +522,9 @@ public class FileUtils extends org.codehaus.plexus.util.FileUtils {
 
     public static String[] listDirectoryPathsRecursive( File file, String[] includes, String[] excludes ) {
 
-        DirectoryScanner scanner = buildScanner( file, includes, excludes );
-        scanner.scan();
-
         List<String> filePaths = new ArrayList<String>();
 
-        for (String filePath : scanner.getIncludedDirectories()) {
+        for (String filePath : fileScanner.getIncludedDirectories( file, includes, excludes )) {
 
             // may be empty string if returning self
             if ( filePath.length() == 0 ) {
@@ -426,12 +543,46 @@ public class FileUtils extends org.codehaus.plexus.util.FileUtils {
         return _filePaths;
     }
 
+    /**
+     * Return the {@link FileScanner} used to list files and directories recursively.
+     * @return
+     */
+    public static FileScanner getFileScanner() {
+
+        return fileScanner;
+    }
+
+    /**
+     * Set the {@link FileScanner} used to list files and directories recursively.
+     * @param fileScanner
+     */
+    public static void setFileScanner( FileScanner fileScanner ) {
+
+        FileUtils.fileScanner = fileScanner;
+    }
+
     public static DirectoryScanner buildScanner( File file, String[] includes, String[] excludes ) {
 
         if ( includes != null && includes.length == 0 ) {
             includes = null;
         }
 
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setIncludes( includes );
+        scanner.setExcludes( buildExcludes( excludes ) );
+        scanner.setBasedir( file );
+        scanner.setCaseSensitive( false );
+        scanner.setFollowSymlinks( true );
+        return scanner;
+    }
+
+    /**
+     * Return the specified excludes along with the patterns for the {@link #IGNORE_FILES}.
+     * @param excludes
+     * @return
+     */
+    public static String[] buildExcludes( String[] excludes ) {
+
         List<String> _excludes = new ArrayList<String>();
 
         for (String ignoreFile : IGNORE_FILES) {
@@ -445,16 +596,7 @@ public class FileUtils extends org.codehaus.plexus.util.FileUtils {
             }
         }
 
-        excludes = new String[_excludes.size()];
-        _excludes.toArray( excludes );
-
-        DirectoryScanner scanner = new DirectoryScanner();
-        scanner.setIncludes( includes );
-        scanner.setExcludes( excludes );
-        scanner.setBasedir( file );
-        scanner.setCaseSensitive( false );
-        scanner.setFollowSymlinks( true );
-        return scanner;
+        return _excludes.toArray( new String[_excludes.size()] );
     }
 
     public static final String[] listFilePathsRecursive( File file ) {
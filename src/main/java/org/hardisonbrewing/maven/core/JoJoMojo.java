@@ -31,6 +31,7 @@ import org.codehaus.plexus.archiver.manager.ArchiverManager;
 import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.Commandline;
 import org.codehaus.plexus.util.cli.StreamConsumer;
+import org.hardisonbrewing.maven.core.cli.CommandHandle;
 import org.hardisonbrewing.maven.core.cli.CommandLineService;
 import org.hardisonbrewing.maven.core.cli.LogStreamConsumer;
 
@@ -81,7 +82,57 @@ public abstract class JoJoMojo extends AbstractMojo {
             exitValue = CommandLineService.execute( commandLine, systemOut, systemErr );
         }
         catch (CommandLineException e) {
-            throw new IllegalStateException( e.getCause() );
+            throw new IllegalStateException( e.getCause() == null ? e : e.getCause() );
+        }
+
+        if ( exitValue != 0 ) {
+            throw new IllegalStateException( "Command exited with value[" + exitValue + "]" );
+        }
+        return exitValue;
+    }
+
+    /**
+     * Start the specified arguments in the background, logging their output.
+     * @param cmd
+     * @return The handle to pass to {@link #waitFor(CommandHandle)}.
+     */
+    protected final CommandHandle executeAsync( List<String> cmd ) {
+
+        return executeAsync( buildCommandline( cmd ) );
+    }
+
+    protected final CommandHandle executeAsync( Commandline commandLine ) {
+
+        StreamConsumer systemOut = new LogStreamConsumer( LogStreamConsumer.LEVEL_INFO );
+        StreamConsumer systemErr = new LogStreamConsumer( LogStreamConsumer.LEVEL_ERROR );
+        return executeAsync( commandLine, systemOut, systemErr );
+    }
+
+    protected final CommandHandle executeAsync( Commandline commandLine, StreamConsumer systemOut, StreamConsumer systemErr ) {
+
+        getLog().info( commandLine.toString() );
+        return CommandLineService.executeAsync( commandLine, systemOut, systemErr );
+    }
+
+    /**
+     * Wait for a command started by {@link #executeAsync(Commandline)}, failing the same way as {@link #execute(Commandline)}.
+     * @param commandHandle
+     * @return The exit value.
+     */
+    protected final int waitFor( CommandHandle commandHandle ) {
+
+        int exitValue;
+
+        try {
+            exitValue = commandHandle.waitFor();
+        }
+        catch (CommandLineException e) {
+            throw new IllegalStateException( e.getCause() == null ? e : e.getCause() );
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            commandHandle.cancel( true );
+            throw new IllegalStateException( e );
         }
 
         if ( exitValue != 0 ) {
@@ -92,10 +143,21 @@ public abstract class JoJoMojo extends AbstractMojo {
 
     protected Commandline buildCommandline( List<String> cmd ) {
 
+        return buildCommandline( cmd, false );
+    }
+
+    /**
+     * Build a {@link Commandline} for the specified arguments, in the target directory.
+     * @param cmd
+     * @param shell true to run the command through /bin/sh, for callers that need shell features.
+     * @return
+     */
+    protected Commandline buildCommandline( List<String> cmd, boolean shell ) {
+
         Commandline commandLine;
 
         try {
-            commandLine = CommandLineService.build( cmd );
+            commandLine = CommandLineService.build( cmd, shell );
         }
         catch (CommandLineException e) {
             throw new IllegalStateException( e.getMessage() );
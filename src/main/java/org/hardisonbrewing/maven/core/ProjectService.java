@@ -23,9 +23,11 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.model.Resource;
@@ -222,7 +224,8 @@ public class ProjectService {
 
     public static final String[] getSourceFilePaths() {
 
-        List<String> sourceFilePaths = new ArrayList<String>();
+        // sources may overlap, keep the first occurrence of each path
+        Set<String> sourceFilePaths = new LinkedHashSet<String>();
 
         for (Source source : getSourceDirectoryPaths()) {
 
@@ -243,14 +246,12 @@ public class ProjectService {
 
     public static String[] getSourceFilePaths( String directory, String[] includes, String[] excludes ) {
 
-        ArrayList<String> filePaths = new ArrayList<String>();
+        Set<String> filePaths = new LinkedHashSet<String>();
 
         File dirFle = new File( directory );
 
-        for (String filePath : FileUtils.listFilePathsRecursive( dirFle, includes, excludes )) {
-            if ( !filePaths.contains( filePath ) ) {
-                filePaths.add( filePath );
-            }
+        for (String filePath : FileIndexService.listFilePathsRecursive( dirFle, includes, excludes )) {
+            filePaths.add( filePath );
         }
 
         String[] _filePaths = new String[filePaths.size()];
@@ -263,7 +264,7 @@ public class ProjectService {
         List<String> resourceFilePaths = new LinkedList<String>();
         for (Resource resource : (List<Resource>) getProject().getResources()) {
             File resourceDirectory = new File( resource.getDirectory() );
-            String[] filePaths = FileUtils.listFilePathsRecursive( resourceDirectory );
+            String[] filePaths = FileIndexService.listFilePathsRecursive( resourceDirectory );
             for (String filePath : filePaths) {
                 resourceFilePaths.add( filePath );
             }
@@ -20,6 +20,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.Properties;
 
 public class PropertiesService {
@@ -67,19 +69,25 @@ public class PropertiesService {
         return properties;
     }
 
-    public static final Properties getProperties() {
+    /**
+     * Return a {@link PropertyResolver} over the command line, project and custom properties, in that
+     * order of priority. The resolver reads the properties live, so later changes to them are seen.
+     * @return
+     */
+    public static final PropertyResolver getPropertyResolver() {
 
-        Properties properties = new Properties();
+        JoJoMojo mojo = JoJoMojo.getMojo();
 
-        // do these first so pom properties can overwrite
-        properties.putAll( customProperties );
+        // these properties come from command line
+        Properties executionProperties = mojo.getMavenSession().getExecutionProperties();
+        Properties projectProperties = mojo.getProject().getProperties();
+        return new PropertyResolver( executionProperties, projectProperties, customProperties );
+    }
 
-        // do these first so execution properties can overwrite
-        properties.putAll( ProjectService.getProject().getProperties() );
+    public static final Properties getProperties() {
 
-        // these properties come from command line
-        properties.putAll( JoJoMojo.getMojo().getMavenSession().getExecutionProperties() );
-        return properties;
+        // command line properties overwrite pom properties, which overwrite custom properties
+        return getPropertyResolver().snapshot();
     }
 
     public static final boolean hasProperty( String key ) {
@@ -90,15 +98,7 @@ public class PropertiesService {
 
     public static final String getProperty( String key ) {
 
-        String value = JoJoMojo.getMojo().getMavenSession().getExecutionProperties().getProperty( key );
-        if ( value != null ) {
-            return value;
-        }
-        value = ProjectService.getProject().getProperties().getProperty( key );
-        if ( value != null ) {
-            return value;
-        }
-        return customProperties.getProperty( key );
+        return getPropertyResolver().getProperty( key );
     }
 
     public static final File getPropertyAsFile( String key ) {
@@ -122,29 +122,23 @@ public class PropertiesService {
         return "true".equalsIgnoreCase( property );
     }
 
+    /**
+     * Replace the template variables in the value with their property values.
+     * @see TemplateVariableFilter
+     */
     public static String populateTemplateVariables( String value, String delimStart, String delimEnd ) {
 
-        Properties properties = PropertiesService.getProperties();
-
-        int start = 0;
-        while (( start = value.indexOf( delimStart, start ) ) != -1) {
-
-            start += delimStart.length();
-
-            int end = value.indexOf( delimEnd, start );
-            String template = value.substring( start, end );
-
-            if ( properties.containsKey( template ) ) {
-
-                String property = properties.getProperty( template );
-                value = value.replace( delimStart + template + delimEnd, property );
-
-                end = start + property.length();
-            }
+        TemplateVariableFilter templateVariableFilter = new TemplateVariableFilter( delimStart, delimEnd );
+        return templateVariableFilter.filter( value, getPropertyResolver() );
+    }
 
-            start = end;
-        }
+    /**
+     * Copy the reader to the writer, replacing the template variables with their property values.
+     * @see TemplateVariableFilter
+     */
+    public static void populateTemplateVariables( Reader reader, Writer writer, String delimStart, String delimEnd ) throws IOException {
 
-        return value;
+        TemplateVariableFilter templateVariableFilter = new TemplateVariableFilter( delimStart, delimEnd );
+        templateVariableFilter.filter( reader, writer, getPropertyResolver() );
     }
 }
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core;
+
+import java.util.Properties;
+
+/**
+ * A read only view over layers of {@link Properties}, highest priority first. Nothing is copied;
+ * each key is looked up through the layers when it is asked for, so changes to the layers are
+ * seen straight away.
+ */
+public class PropertyResolver {
+
+    private final Properties[] layers;
+
+    /**
+     * @param layers The properties to resolve keys from, highest priority first.
+     */
+    public PropertyResolver(Properties... layers) {
+
+        this.layers = layers.clone();
+    }
+
+    /**
+     * Return the value for the key from the first layer that has one, or null.
+     * @param key
+     * @return
+     */
+    public String getProperty( String key ) {
+
+        for (Properties layer : layers) {
+            String value = layer.getProperty( key );
+            if ( value != null ) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    public boolean hasProperty( String key ) {
+
+        return getProperty( key ) != null;
+    }
+
+    /**
+     * Return a copy of the merged layers. Changes to the copy do not affect the resolver.
+     * @return
+     */
+    public Properties snapshot() {
+
+        Properties properties = new Properties();
+        for (int i = layers.length - 1; i >= 0; i--) {
+            properties.putAll( layers[i] );
+        }
+        return properties;
+    }
+}
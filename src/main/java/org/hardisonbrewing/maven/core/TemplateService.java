@@ -16,49 +16,182 @@
  */
 package org.hardisonbrewing.maven.core;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import org.apache.commons.collections.ExtendedProperties;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.Velocity;
 import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.Resource;
+import org.apache.velocity.runtime.resource.loader.ResourceLoader;
 import org.codehaus.plexus.util.IOUtil;
+import org.hardisonbrewing.maven.core.model.TemplateJob;
 
 public class TemplateService {
 
-	private static final String VELOCITY_PROPERTIES = "/velocity.properties";
+    /**
+     * The charset rendered files are written with.
+     */
+    public static final String ENCODING = "UTF-8";
+
+    private static final String VELOCITY_PROPERTIES = "/velocity.properties";
+
+    private static final String FILE_RESOURCE_LOADER = "hbcfile";
+    private static final String CLASSPATH_KEY_PREFIX = "classpath:";
+
+    /**
+     * The maximum number of parsed templates to keep.
+     */
+    private static final int TEMPLATE_CACHE_SIZE = 256;
+
+    private static final Map<String, CachedTemplate> templateCache = new LinkedHashMap<String, CachedTemplate>( 16, 0.75f, true ) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry( Entry<String, CachedTemplate> eldest ) {
+
+            return size() > TEMPLATE_CACHE_SIZE;
+        }
+    };
+
+    private static VelocityEngine velocityEngine;
+    private static VelocityEngine fileVelocityEngine;
 
     protected TemplateService() {
 
         // do nothing
     }
 
-    public static final Template getTemplateFromClasspath( String resource ) {
+    /**
+     * Return the shared {@link VelocityEngine} for classpath templates, configured from {@link #VELOCITY_PROPERTIES}.
+     * @return
+     */
+    public static final synchronized VelocityEngine getVelocityEngine() {
+
+        if ( velocityEngine == null ) {
+            VelocityEngine _velocityEngine = new VelocityEngine();
+            _velocityEngine.init( loadVelocityProperties() );
+            velocityEngine = _velocityEngine;
+        }
+        return velocityEngine;
+    }
+
+    /**
+     * Return the shared {@link VelocityEngine} for file templates. Template names are file paths.
+     * @return
+     */
+    private static final synchronized VelocityEngine getFileVelocityEngine() {
+
+        if ( fileVelocityEngine == null ) {
+            Properties properties = loadVelocityProperties();
+            properties.setProperty( RuntimeConstants.RESOURCE_LOADER, FILE_RESOURCE_LOADER );
+            VelocityEngine _velocityEngine = new VelocityEngine();
+            _velocityEngine.setProperty( FILE_RESOURCE_LOADER + ".resource.loader.instance", new FileResourceLoader() );
+            _velocityEngine.init( properties );
+            fileVelocityEngine = _velocityEngine;
+        }
+        return fileVelocityEngine;
+    }
+
+    private static final Properties loadVelocityProperties() {
 
         Properties properties = new Properties();
         InputStream inputStream = null;
 
         try {
-            inputStream = TemplateService.class.getResourceAsStream(VELOCITY_PROPERTIES);
-            properties.load(inputStream);
+            inputStream = TemplateService.class.getResourceAsStream( VELOCITY_PROPERTIES );
+            properties.load( inputStream );
         }
         catch (IOException e) {
-            IOUtil.close(inputStream);
-            JoJoMojo.getMojo().getLog().error("Unable to load VelocityEngine properties file: " + VELOCITY_PROPERTIES);
-            throw new IllegalStateException(e);
+            JoJoMojo.getMojo().getLog().error( "Unable to load VelocityEngine properties file: " + VELOCITY_PROPERTIES );
+            throw new IllegalStateException( e );
         }
+        finally {
+            IOUtil.close( inputStream );
+        }
+
+        return properties;
+    }
+
+    public static final Template getTemplateFromClasspath( String resource ) {
+
+        String key = CLASSPATH_KEY_PREFIX + resource;
 
-        VelocityEngine velocityEngine = new VelocityEngine();
-        velocityEngine.init(properties);
-        return velocityEngine.getTemplate( resource );
+        Template template = getCachedTemplate( key, 0 );
+        if ( template == null ) {
+            template = getVelocityEngine().getTemplate( resource );
+            putCachedTemplate( key, 0, template );
+        }
+        return template;
+    }
+
+    /**
+     * Return the parsed {@link Template} for the specified file. The template is parsed again
+     * only if the file has been modified since it was last parsed.
+     * @param file The template file.
+     * @return
+     */
+    public static final Template getTemplate( File file ) {
+
+        String key = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+
+        Template template = getCachedTemplate( key, lastModified );
+        if ( template == null ) {
+            // FileReader used the platform encoding, keep that for file templates
+            template = getFileVelocityEngine().getTemplate( key, Charset.defaultCharset().name() );
+            putCachedTemplate( key, lastModified, template );
+        }
+        return template;
+    }
+
+    private static final Template getCachedTemplate( String key, long lastModified ) {
+
+        CachedTemplate cachedTemplate;
+        synchronized (templateCache) {
+            cachedTemplate = templateCache.get( key );
+        }
+
+        if ( cachedTemplate == null || cachedTemplate.lastModified != lastModified ) {
+            return null;
+        }
+        return cachedTemplate.template;
+    }
+
+    private static final void putCachedTemplate( String key, long lastModified, Template template ) {
+
+        synchronized (templateCache) {
+            templateCache.put( key, new CachedTemplate( template, lastModified ) );
+        }
     }
 
     public static final VelocityContext getContext( Properties properties ) {
@@ -71,6 +204,81 @@ public class TemplateService {
         return velocityContext;
     }
 
+    /**
+     * Return a {@link VelocityContext} layered over the base context. Lookups fall through to the
+     * base context and writes, including <code>#set</code>, stay in the new layer, so the base
+     * context can be shared between threads.
+     * @param baseContext
+     * @param properties The properties for the new layer, may be null.
+     * @return
+     */
+    public static final VelocityContext getContext( VelocityContext baseContext, Properties properties ) {
+
+        VelocityContext velocityContext = new VelocityContext( baseContext );
+        if ( properties != null ) {
+            Set<Entry<Object, Object>> entrySet = properties.entrySet();
+            for (Entry<Object, Object> entry : entrySet) {
+                velocityContext.put( (String) entry.getKey(), (String) entry.getValue() );
+            }
+        }
+        return velocityContext;
+    }
+
+    /**
+     * Render each {@link TemplateJob} using one worker per available processor.
+     * @see #writeTemplates(List, Properties, int)
+     */
+    public static final void writeTemplates( List<TemplateJob> jobs, Properties properties ) throws IOException {
+
+        writeTemplates( jobs, properties, ThreadPoolService.getDefaultParallelism() );
+    }
+
+    /**
+     * Render each {@link TemplateJob} in parallel. The properties are copied into a single base
+     * context which every job layers its own properties over. The time taken for each job is
+     * recorded in {@link TemplateJob#duration}.
+     * @param jobs
+     * @param properties The properties shared by all jobs.
+     * @param parallelism The maximum number of templates to render at once.
+     * @throws IOException
+     */
+    public static final void writeTemplates( List<TemplateJob> jobs, Properties properties, int parallelism ) throws IOException {
+
+        if ( jobs.isEmpty() ) {
+            return;
+        }
+
+        VelocityContext baseContext = getContext( properties );
+
+        ExecutorService executorService = ThreadPoolService.newThreadPool( "hbc-template", Math.min( parallelism, jobs.size() ) );
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>( jobs.size() );
+            for (TemplateJob job : jobs) {
+                futures.add( executorService.submit( new TemplateJobTask( job, baseContext ) ) );
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( e );
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException( cause );
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
     public static final void writeTemplate( File template, Properties properties, File file ) throws IOException {
 
         VelocityContext velocityContext = getContext( properties );
@@ -79,8 +287,11 @@ public class TemplateService {
 
     public static final void writeTemplate( File template, VelocityContext velocityContext, File file ) throws IOException {
 
-        Reader reader = new FileReader( template );
-        writeTemplate( reader, velocityContext, file );
+        if ( !template.exists() ) {
+            throw new FileNotFoundException( template.getPath() );
+        }
+
+        writeTemplate( getTemplate( template ), velocityContext, file );
     }
 
     public static final void writeTemplate( Template template, Properties properties, File file ) throws IOException {
@@ -89,27 +300,166 @@ public class TemplateService {
         writeTemplate( template, velocityContext, file );
     }
 
+    /**
+     * Render the {@link Template} to the specified file using {@link #ENCODING}. The file is
+     * left untouched if it already holds the rendered bytes, so its last modified time
+     * only changes when the output does.
+     * @param template
+     * @param velocityContext
+     * @param file
+     * @throws IOException
+     */
     public static final void writeTemplate( Template template, VelocityContext velocityContext, File file ) throws IOException {
 
-        FileWriter fileWriter = null;
-        try {
-            fileWriter = new FileWriter( file );
-            template.merge( velocityContext, fileWriter );
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeTemplate( template, velocityContext, outputStream, ENCODING );
+        FileUtils.writeIfChanged( file, outputStream.toByteArray() );
+    }
+
+    /**
+     * Render the {@link Template} to the specified {@link OutputStream}. The stream is flushed but not closed.
+     * @param template
+     * @param velocityContext
+     * @param outputStream
+     * @param encoding The charset for the rendered output.
+     * @throws IOException
+     */
+    public static final void writeTemplate( Template template, VelocityContext velocityContext, OutputStream outputStream, String encoding ) throws IOException {
+
+        Writer writer = new BufferedWriter( new OutputStreamWriter( outputStream, encoding ) );
+        writeTemplate( template, velocityContext, writer );
+    }
+
+    /**
+     * Render the {@link Template} to the specified {@link WritableByteChannel}. The channel is not closed.
+     * @param template
+     * @param velocityContext
+     * @param channel
+     * @param encoding The charset for the rendered output.
+     * @throws IOException
+     */
+    public static final void writeTemplate( Template template, VelocityContext velocityContext, WritableByteChannel channel, String encoding ) throws IOException {
+
+        Writer writer = new BufferedWriter( Channels.newWriter( channel, encoding ) );
+        writeTemplate( template, velocityContext, writer );
+    }
+
+    /**
+     * Render the {@link Template} to the specified {@link Writer}. The writer is flushed but not closed.
+     * @param template
+     * @param velocityContext
+     * @param writer
+     * @throws IOException
+     */
+    public static final void writeTemplate( Template template, VelocityContext velocityContext, Writer writer ) throws IOException {
+
+        template.merge( velocityContext, writer );
+        writer.flush();
+    }
+
+    /**
+     * Evaluate the template text to the specified file using {@link #ENCODING}. The file is
+     * left untouched if it already holds the rendered bytes.
+     * @param reader The template text.
+     * @param velocityContext
+     * @param file
+     * @throws IOException
+     */
+    public static final void writeTemplate( Reader reader, VelocityContext velocityContext, File file ) throws IOException {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Writer writer = new BufferedWriter( new OutputStreamWriter( outputStream, ENCODING ) );
+        writeTemplate( reader, velocityContext, writer );
+        FileUtils.writeIfChanged( file, outputStream.toByteArray() );
+    }
+
+    /**
+     * Evaluate the template text to the specified {@link Writer}. The writer is flushed but not closed.
+     * @param reader The template text.
+     * @param velocityContext
+     * @param writer
+     * @throws IOException
+     */
+    public static final void writeTemplate( Reader reader, VelocityContext velocityContext, Writer writer ) throws IOException {
+
+        getFileVelocityEngine().evaluate( velocityContext, writer, "", reader );
+        writer.flush();
+    }
+
+    private static final class TemplateJobTask implements Callable<Void> {
+
+        private final TemplateJob job;
+        private final VelocityContext baseContext;
+
+        public TemplateJobTask(TemplateJob job, VelocityContext baseContext) {
+
+            this.job = job;
+            this.baseContext = baseContext;
         }
-        finally {
-            IOUtil.close( fileWriter );
+
+        @Override
+        public Void call() throws Exception {
+
+            long start = System.currentTimeMillis();
+
+            VelocityContext velocityContext = getContext( baseContext, job.properties );
+            writeTemplate( job.template, velocityContext, job.file );
+
+            job.duration = System.currentTimeMillis() - start;
+
+            Log log = JoJoMojo.getMojo().getLog();
+            if ( log.isDebugEnabled() ) {
+                log.debug( "Rendered " + job.file + " in " + job.duration + "ms" );
+            }
+
+            return null;
         }
     }
 
-    public static final void writeTemplate( Reader reader, VelocityContext velocityContext, File file ) throws IOException {
+    private static final class CachedTemplate {
 
-        FileWriter fileWriter = null;
-        try {
-            fileWriter = new FileWriter( file );
-            Velocity.evaluate( velocityContext, fileWriter, "", reader );
+        private final Template template;
+        private final long lastModified;
+
+        public CachedTemplate(Template template, long lastModified) {
+
+            this.template = template;
+            this.lastModified = lastModified;
         }
-        finally {
-            IOUtil.close( fileWriter );
+    }
+
+    /**
+     * A {@link ResourceLoader} that loads templates by file path, absolute or relative to the working directory.
+     */
+    private static final class FileResourceLoader extends ResourceLoader {
+
+        @Override
+        public void init( ExtendedProperties configuration ) {
+
+            // do nothing
+        }
+
+        @Override
+        public InputStream getResourceStream( String source ) throws ResourceNotFoundException {
+
+            try {
+                return new BufferedInputStream( new FileInputStream( source ) );
+            }
+            catch (FileNotFoundException e) {
+                throw new ResourceNotFoundException( e.getMessage() );
+            }
+        }
+
+        @Override
+        public boolean isSourceModified( Resource resource ) {
+
+            return getLastModified( resource ) != resource.getLastModified();
+        }
+
+        @Override
+        public long getLastModified( Resource resource ) {
+
+            return new File( resource.getName() ).lastModified();
         }
     }
 }
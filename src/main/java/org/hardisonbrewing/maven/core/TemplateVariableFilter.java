@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Properties;
+
+/**
+ * Replaces template variables, such as <code>${name}</code>, with their property values in a
+ * single pass. Variables without a property value are left in place. Replaced values are not
+ * scanned again. Where start delimiters are nested, the innermost variable is replaced.
+ * <p>
+ * A start delimiter without an end delimiter in the following {@link #MAX_KEY_LENGTH}
+ * characters is not a variable and is copied as is. This bounds the memory needed to filter
+ * a {@link Reader}, and the {@link String} and {@link Reader} forms give the same result.
+ * </p>
+ * Instances hold only the delimiters and can be shared between threads.
+ */
+public class TemplateVariableFilter {
+
+    /**
+     * The longest variable name that will be recognized.
+     */
+    public static final int MAX_KEY_LENGTH = 4096;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String delimStart;
+    private final String delimEnd;
+
+    public TemplateVariableFilter(String delimStart, String delimEnd) {
+
+        if ( delimStart == null || delimStart.length() == 0 ) {
+            throw new IllegalArgumentException( "Start delimiter must not be empty." );
+        }
+        if ( delimEnd == null || delimEnd.length() == 0 ) {
+            throw new IllegalArgumentException( "End delimiter must not be empty." );
+        }
+
+        this.delimStart = delimStart;
+        this.delimEnd = delimEnd;
+    }
+
+    /**
+     * Return the value with its template variables replaced.
+     * @param value
+     * @param properties
+     * @return
+     */
+    public String filter( String value, Properties properties ) {
+
+        return filter( value, new PropertyResolver( properties ) );
+    }
+
+    /**
+     * Return the value with its template variables replaced.
+     * @param value
+     * @param propertyResolver
+     * @return
+     */
+    public String filter( String value, PropertyResolver propertyResolver ) {
+
+        if ( value.indexOf( delimStart ) == -1 ) {
+            return value;
+        }
+
+        StringBuilder stringBuilder = new StringBuilder( value.length() + 16 );
+        filter( value, true, stringBuilder, propertyResolver );
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Copy the reader to the writer, replacing template variables. The writer is flushed but
+     * neither stream is closed.
+     * @param reader
+     * @param writer
+     * @param properties
+     * @throws IOException
+     */
+    public void filter( Reader reader, Writer writer, Properties properties ) throws IOException {
+
+        filter( reader, writer, new PropertyResolver( properties ) );
+    }
+
+    /**
+     * Copy the reader to the writer, replacing template variables. The writer is flushed but
+     * neither stream is closed.
+     * @param reader
+     * @param writer
+     * @param propertyResolver
+     * @throws IOException
+     */
+    public void filter( Reader reader, Writer writer, PropertyResolver propertyResolver ) throws IOException {
+
+        char[] chars = new char[BUFFER_SIZE];
+        StringBuilder buffer = new StringBuilder( BUFFER_SIZE * 2 );
+        StringBuilder output = new StringBuilder( BUFFER_SIZE * 2 );
+
+        int read;
+        while (( read = reader.read( chars ) ) != -1) {
+
+            buffer.append( chars, 0, read );
+
+            int consumed = filter( buffer, false, output, propertyResolver );
+            buffer.delete( 0, consumed );
+
+            writer.append( output );
+            output.setLength( 0 );
+        }
+
+        filter( buffer, true, output, propertyResolver );
+        writer.append( output );
+        writer.flush();
+    }
+
+    /**
+     * Filter the input into the output, stopping where a variable may continue past the end of
+     * the input unless this is the end of the input.
+     * @return The number of input characters consumed.
+     */
+    private int filter( CharSequence input, boolean eof, StringBuilder output, PropertyResolver propertyResolver ) {
+
+        int length = input.length();
+        int index = 0;
+
+        while (true) {
+
+            int start = indexOf( input, delimStart, index, length );
+            if ( start == -1 ) {
+                if ( eof ) {
+                    output.append( input, index, length );
+                    return length;
+                }
+                // the end may hold the beginning of a start delimiter
+                int safe = Math.max( index, length - ( delimStart.length() - 1 ) );
+                output.append( input, index, safe );
+                return safe;
+            }
+
+            int keyStart = start + delimStart.length();
+            int keyLimit = keyStart + MAX_KEY_LENGTH;
+
+            int end = indexOf( input, delimEnd, keyStart, Math.min( keyLimit + delimEnd.length(), length ) );
+            if ( end == -1 ) {
+                if ( !eof && length < keyLimit + delimEnd.length() ) {
+                    output.append( input, index, start );
+                    return start;
+                }
+                // unterminated, the start delimiter is just text
+                output.append( input, index, keyStart );
+                index = keyStart;
+                continue;
+            }
+
+            // for nested start delimiters the innermost variable is the one that ends here
+            int innerStart = lastIndexOf( input, delimStart, start + 1, end );
+            if ( innerStart != -1 ) {
+                start = innerStart;
+                keyStart = start + delimStart.length();
+            }
+
+            String key = input.subSequence( keyStart, end ).toString();
+            String property = propertyResolver.getProperty( key );
+
+            if ( property == null ) {
+                // leave the variable in place, the end delimiter may also start the next one
+                output.append( input, index, end );
+                index = end;
+            }
+            else {
+                output.append( input, index, start );
+                output.append( property );
+                index = end + delimEnd.length();
+            }
+        }
+    }
+
+    /**
+     * Return the index of the string in the input, which must end before the limit, or -1.
+     */
+    private static int indexOf( CharSequence input, String string, int fromIndex, int limit ) {
+
+        char first = string.charAt( 0 );
+        int last = limit - string.length();
+
+        for (int i = fromIndex; i <= last; i++) {
+
+            if ( input.charAt( i ) != first ) {
+                continue;
+            }
+
+            int j = 1;
+            while (j < string.length() && input.charAt( i + j ) == string.charAt( j )) {
+                j++;
+            }
+            if ( j == string.length() ) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Return the last index of the string in the input, at or after the start and ending before the limit, or -1.
+     */
+    private static int lastIndexOf( CharSequence input, String string, int fromIndex, int limit ) {
+
+        for (int i = limit - string.length(); i >= fromIndex; i--) {
+
+            int j = 0;
+            while (j < string.length() && input.charAt( i + j ) == string.charAt( j )) {
+                j++;
+            }
+            if ( j == string.length() ) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
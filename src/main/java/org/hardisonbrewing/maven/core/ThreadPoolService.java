@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utility methods for creating the worker pools used by the parallel services.
+ */
+public class ThreadPoolService {
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    protected ThreadPoolService() {
+
+        // do nothing
+    }
+
+    /**
+     * Return the default number of worker threads, one per available processor.
+     * @return
+     */
+    public static final int getDefaultParallelism() {
+
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Create a bounded {@link ExecutorService} backed by daemon threads. Idle threads
+     * time out so an unused pool does not hold on to resources for the rest of the build.
+     * @param name The prefix for the worker thread names.
+     * @param threads The maximum number of worker threads.
+     * @return
+     */
+    public static final ExecutorService newThreadPool( String name, int threads ) {
+
+        if ( threads < 1 ) {
+            throw new IllegalArgumentException( "Thread count must be >= 1." );
+        }
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor( threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory( name ) );
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final String name;
+
+        public DaemonThreadFactory(String name) {
+
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread( Runnable runnable ) {
+
+            Thread thread = new Thread( runnable, name + "-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
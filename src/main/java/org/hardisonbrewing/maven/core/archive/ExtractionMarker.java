@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Records which archive was extracted to a directory, and the size and last modified time
+ * each entry was left with, so an unchanged archive does not need to be extracted again.
+ */
+class ExtractionMarker {
+
+    private static final int VERSION = 1;
+
+    private final Map<String, MarkedEntry> entries = new LinkedHashMap<String, MarkedEntry>();
+
+    private final String srcPath;
+    private final long length;
+    private final long lastModified;
+
+    public ExtractionMarker(File src) {
+
+        this( src.getAbsolutePath(), src.length(), src.lastModified() );
+    }
+
+    private ExtractionMarker(String srcPath, long length, long lastModified) {
+
+        this.srcPath = srcPath;
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Return true if the archive is the same size and has the same last modified time as when it was extracted.
+     */
+    public boolean isArchive( File src ) {
+
+        return srcPath.equals( src.getAbsolutePath() ) && length == src.length() && lastModified == src.lastModified();
+    }
+
+    /**
+     * Return true if every entry is still in the destination directory as it was extracted.
+     */
+    public boolean isExtracted( File dest ) {
+
+        for (MarkedEntry entry : entries.values()) {
+            if ( !entry.isExtracted( new File( dest, entry.name ) ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public MarkedEntry get( String name ) {
+
+        return entries.get( name );
+    }
+
+    public void put( MarkedEntry entry ) {
+
+        entries.put( entry.name, entry );
+    }
+
+    public Collection<MarkedEntry> getEntries() {
+
+        return entries.values();
+    }
+
+    /**
+     * Read the marker for the destination directory, or return null if there is none.
+     */
+    public static ExtractionMarker load( File file, File dest ) throws IOException {
+
+        if ( !file.exists() ) {
+            return null;
+        }
+
+        DataInputStream inputStream = null;
+
+        try {
+            inputStream = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+
+            if ( inputStream.readInt() != VERSION ) {
+                return null;
+            }
+            if ( !dest.getAbsolutePath().equals( inputStream.readUTF() ) ) {
+                return null;
+            }
+
+            ExtractionMarker marker = new ExtractionMarker( inputStream.readUTF(), inputStream.readLong(), inputStream.readLong() );
+
+            int count = inputStream.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = inputStream.readUTF();
+                MarkedEntry entry = new MarkedEntry( name, inputStream.readBoolean(), inputStream.readLong(), inputStream.readLong(), inputStream.readLong(), inputStream.readLong() );
+                marker.put( entry );
+            }
+
+            return marker;
+        }
+        finally {
+            IOUtil.close( inputStream );
+        }
+    }
+
+    public void store( File file, File dest ) throws IOException {
+
+        File parent = file.getParentFile();
+        if ( parent != null && !parent.exists() ) {
+            parent.mkdirs();
+        }
+
+        DataOutputStream outputStream = null;
+
+        try {
+            outputStream = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+            outputStream.writeInt( VERSION );
+            outputStream.writeUTF( dest.getAbsolutePath() );
+            outputStream.writeUTF( srcPath );
+            outputStream.writeLong( length );
+            outputStream.writeLong( lastModified );
+
+            outputStream.writeInt( entries.size() );
+            for (MarkedEntry entry : entries.values()) {
+                outputStream.writeUTF( entry.name );
+                outputStream.writeBoolean( entry.directory );
+                outputStream.writeLong( entry.crc );
+                outputStream.writeLong( entry.size );
+                outputStream.writeLong( entry.time );
+                outputStream.writeLong( entry.lastModified );
+            }
+        }
+        finally {
+            IOUtil.close( outputStream );
+        }
+    }
+
+    static final class MarkedEntry {
+
+        private final String name;
+        private final boolean directory;
+        private final long crc;
+        private final long size;
+        private final long time;
+
+        /**
+         * The last modified time of the extracted file, which the file system may have rounded.
+         */
+        private final long lastModified;
+
+        public MarkedEntry(ZipEntry zipEntry, long lastModified) {
+
+            this( zipEntry.getName(), zipEntry.isDirectory(), zipEntry.getCrc(), zipEntry.getSize(), zipEntry.getTime(), lastModified );
+        }
+
+        private MarkedEntry(String name, boolean directory, long crc, long size, long time, long lastModified) {
+
+            this.name = name;
+            this.directory = directory;
+            this.crc = crc;
+            this.size = size;
+            this.time = time;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Return true if the zip entry has the same content and time as this entry.
+         */
+        public boolean matches( ZipEntry zipEntry ) {
+
+            return directory == zipEntry.isDirectory() && crc == zipEntry.getCrc() && size == zipEntry.getSize() && time == zipEntry.getTime();
+        }
+
+        /**
+         * Return true if the file is still as this entry left it.
+         */
+        public boolean isExtracted( File file ) {
+
+            if ( directory ) {
+                return file.isDirectory();
+            }
+            return file.isFile() && file.length() == size && file.lastModified() == lastModified;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.hardisonbrewing.maven.core.ThreadPoolService;
+import org.hardisonbrewing.maven.core.archive.ZipWriter.Record;
+
+/**
+ * Creates zip archives of a directory, deflating the entries in parallel.
+ * <p>
+ * Entries are written in sorted order with a fixed timestamp and unix mode, so the same tree
+ * always produces the same bytes. Entries with an extension in {@link #getStoredExtensions()} are
+ * stored rather than deflated, as are entries that deflating does not make smaller, and every
+ * entry with a compression level of {@link #STORE}.
+ * </p>
+ */
+public class ZipCompressor {
+
+    /**
+     * The compression level that stores every entry without deflating it.
+     */
+    public static final int STORE = Deflater.NO_COMPRESSION;
+
+    /**
+     * Files this size or larger are deflated on the writing thread, rather than held in memory.
+     */
+    public static final long LARGE_ENTRY_SIZE = 1024 * 1024;
+
+    /**
+     * The most bytes of input that the entries being deflated, or waiting to be written in order, may hold.
+     */
+    public static final long PENDING_SIZE = 32 * 1024 * 1024;
+
+    private static final String[] COMPRESSED_EXTENSIONS = new String[] { "zip", "jar", "war", "ear", "apk", "gz", "tgz", "bz2", "xz", "7z", "png", "jpg", "jpeg", "gif", "mp3", "mp4" };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Set<String> storedExtensions = new HashSet<String>();
+
+    private final int level;
+    private final int parallelism;
+
+    public ZipCompressor() {
+
+        this( Deflater.DEFAULT_COMPRESSION, ThreadPoolService.getDefaultParallelism() );
+    }
+
+    /**
+     * @param level The {@link Deflater} compression level, or {@link #STORE}.
+     * @param parallelism The maximum number of entries to deflate at once.
+     */
+    public ZipCompressor(int level, int parallelism) {
+
+        if ( level != Deflater.DEFAULT_COMPRESSION && ( level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION ) ) {
+            throw new IllegalArgumentException( "Invalid compression level: " + level );
+        }
+        if ( parallelism < 1 ) {
+            throw new IllegalArgumentException( "Parallelism must be >= 1." );
+        }
+        this.level = level;
+        this.parallelism = parallelism;
+
+        Collections.addAll( storedExtensions, COMPRESSED_EXTENSIONS );
+    }
+
+    /**
+     * Return the extensions, lower case and without the dot, of files that are stored rather than deflated.
+     * The returned {@link Set} may be modified.
+     * @return
+     */
+    public Set<String> getStoredExtensions() {
+
+        return storedExtensions;
+    }
+
+    /**
+     * Archive the contents of the source directory.
+     * @param src The source directory.
+     * @param dest The destination archive.
+     * @throws IOException
+     */
+    public void compress( File src, File dest ) throws IOException {
+
+        List<Source> sources = new ArrayList<Source>();
+        collect( src, "", sources );
+        Collections.sort( sources );
+
+        File parent = dest.getParentFile();
+        if ( parent != null ) {
+            parent.mkdirs();
+        }
+
+        boolean success = false;
+        FileOutputStream outputStream = new FileOutputStream( dest );
+        ExecutorService executorService = ThreadPoolService.newThreadPool( "hbc-archive", parallelism );
+        try {
+            ZipWriter zipWriter = new ZipWriter( outputStream.getChannel() );
+            compress( sources, zipWriter, outputStream.getChannel(), executorService );
+            zipWriter.finish();
+            success = true;
+        }
+        finally {
+            executorService.shutdownNow();
+            IOUtil.close( outputStream );
+            if ( !success ) {
+                dest.delete();
+            }
+        }
+    }
+
+    private void compress( List<Source> sources, ZipWriter zipWriter, FileChannel channel, ExecutorService executorService ) throws IOException {
+
+        // enough entries to keep every thread busy, but no more than PENDING_SIZE bytes of them
+        int window = parallelism * 4;
+        LinkedList<Future<Deflated>> pending = new LinkedList<Future<Deflated>>();
+        LinkedList<Source> pendingSources = new LinkedList<Source>();
+        long pendingSize = 0;
+
+        for (Source source : sources) {
+
+            if ( source.isLarge() ) {
+                while (!pending.isEmpty()) {
+                    write( zipWriter, pending.removeFirst() );
+                }
+                pendingSources.clear();
+                pendingSize = 0;
+                write( zipWriter, channel, source );
+                continue;
+            }
+
+            while (!pending.isEmpty() && ( pending.size() >= window || pendingSize + source.length > PENDING_SIZE )) {
+                write( zipWriter, pending.removeFirst() );
+                pendingSize -= pendingSources.removeFirst().length;
+            }
+
+            pending.add( executorService.submit( new DeflateTask( source ) ) );
+            pendingSources.add( source );
+            pendingSize += source.length;
+        }
+
+        while (!pending.isEmpty()) {
+            write( zipWriter, pending.removeFirst() );
+        }
+    }
+
+    private static void write( ZipWriter zipWriter, Future<Deflated> future ) throws IOException {
+
+        Deflated deflated;
+        try {
+            deflated = future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while archiving" );
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException( cause );
+        }
+
+        Source source = deflated.source;
+        zipWriter.write( source.name, source.getMode(), deflated.method, deflated.crc, deflated.size, deflated.data, deflated.length );
+    }
+
+    /**
+     * Stream a large file straight to the archive.
+     */
+    private void write( ZipWriter zipWriter, FileChannel channel, Source source ) throws IOException {
+
+        int method = getMethod( source );
+        Record record = zipWriter.begin( source.name, source.getMode(), method, source.file.length() >= Integer.MAX_VALUE );
+        long start = channel.position();
+
+        CRC32 crc = new CRC32();
+        long size = 0;
+
+        Deflater deflater = method == ZipEntry.DEFLATED ? new Deflater( level, true ) : null;
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream( source.file );
+
+            // not closed, which would close the channel
+            OutputStream outputStream = new BufferedOutputStream( Channels.newOutputStream( channel ), BUFFER_SIZE );
+            if ( deflater != null ) {
+                outputStream = new DeflaterOutputStream( outputStream, deflater, BUFFER_SIZE );
+            }
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while (( read = inputStream.read( buffer ) ) != -1) {
+                crc.update( buffer, 0, read );
+                outputStream.write( buffer, 0, read );
+                size += read;
+            }
+
+            if ( deflater != null ) {
+                ( (DeflaterOutputStream) outputStream ).finish();
+            }
+            outputStream.flush();
+        }
+        finally {
+            IOUtil.close( inputStream );
+            if ( deflater != null ) {
+                deflater.end();
+            }
+        }
+
+        zipWriter.end( record, crc.getValue(), size, channel.position() - start );
+    }
+
+    private int getMethod( Source source ) {
+
+        if ( level == STORE || source.directory ) {
+            return ZipEntry.STORED;
+        }
+
+        String name = source.name;
+        int dot = name.lastIndexOf( '.' );
+        if ( dot > name.lastIndexOf( '/' ) && storedExtensions.contains( name.substring( dot + 1 ).toLowerCase( Locale.ENGLISH ) ) ) {
+            return ZipEntry.STORED;
+        }
+        return ZipEntry.DEFLATED;
+    }
+
+    /**
+     * Return the deflated bytes, or null if they are no smaller than the input.
+     */
+    static byte[] deflate( byte[] bytes, int level ) {
+
+        Deflater deflater = new Deflater( level, true );
+        try {
+            deflater.setInput( bytes );
+            deflater.finish();
+
+            byte[] buffer = new byte[Math.max( 64, bytes.length )];
+            int length = 0;
+            while (!deflater.finished() && length < buffer.length) {
+                length += deflater.deflate( buffer, length, buffer.length - length );
+            }
+            if ( !deflater.finished() || length >= bytes.length ) {
+                return null;
+            }
+
+            byte[] data = new byte[length];
+            System.arraycopy( buffer, 0, data, 0, length );
+            return data;
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private static void collect( File directory, String prefix, List<Source> sources ) throws IOException {
+
+        File[] files = directory.listFiles();
+        if ( files == null ) {
+            throw new IOException( "Unable to list directory: " + directory );
+        }
+
+        for (File file : files) {
+            String name = prefix + file.getName();
+            if ( file.isDirectory() ) {
+                name += "/";
+                sources.add( new Source( name, file, true ) );
+                collect( file, name, sources );
+            }
+            else {
+                sources.add( new Source( name, file, false ) );
+            }
+        }
+    }
+
+    private static final class Source implements Comparable<Source> {
+
+        private final String name;
+        private final File file;
+        private final boolean directory;
+        private final long length;
+
+        public Source(String name, File file, boolean directory) {
+
+            this.name = name;
+            this.file = file;
+            this.directory = directory;
+            length = directory ? 0 : file.length();
+        }
+
+        public boolean isLarge() {
+
+            return length >= LARGE_ENTRY_SIZE;
+        }
+
+        public int getMode() {
+
+            if ( directory ) {
+                return ZipWriter.DIRECTORY_MODE;
+            }
+            return file.canExecute() ? ZipWriter.EXECUTABLE_MODE : ZipWriter.FILE_MODE;
+        }
+
+        @Override
+        public int compareTo( Source source ) {
+
+            return name.compareTo( source.name );
+        }
+    }
+
+    private static final class Deflated {
+
+        private Source source;
+        private int method;
+        private long crc;
+        private long size;
+        private byte[] data;
+        private int length;
+    }
+
+    private final class DeflateTask implements Callable<Deflated> {
+
+        private final Source source;
+
+        public DeflateTask(Source source) {
+
+            this.source = source;
+        }
+
+        @Override
+        public Deflated call() throws IOException {
+
+            Deflated deflated = new Deflated();
+            deflated.source = source;
+            deflated.method = getMethod( source );
+
+            byte[] bytes = source.directory ? new byte[0] : read( source.file );
+
+            CRC32 crc = new CRC32();
+            crc.update( bytes );
+            deflated.crc = crc.getValue();
+            deflated.size = bytes.length;
+
+            if ( deflated.method == ZipEntry.DEFLATED ) {
+                byte[] data = deflate( bytes, level );
+                if ( data != null ) {
+                    deflated.data = data;
+                    deflated.length = data.length;
+                    return deflated;
+                }
+                deflated.method = ZipEntry.STORED;
+            }
+
+            deflated.data = bytes;
+            deflated.length = bytes.length;
+            return deflated;
+        }
+
+        private byte[] read( File file ) throws IOException {
+
+            InputStream inputStream = null;
+            try {
+                inputStream = new FileInputStream( file );
+                return IOUtil.toByteArray( inputStream, BUFFER_SIZE );
+            }
+            finally {
+                IOUtil.close( inputStream );
+            }
+        }
+    }
+}
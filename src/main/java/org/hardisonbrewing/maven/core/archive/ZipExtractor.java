@@ -0,0 +1,412 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.archive;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.hardisonbrewing.maven.core.JoJoMojo;
+import org.hardisonbrewing.maven.core.ThreadPoolService;
+import org.hardisonbrewing.maven.core.archive.ExtractionMarker.MarkedEntry;
+
+/**
+ * Extracts zip based archives the same way as the plexus zip unarchivers with overwrite
+ * enabled, but skips the work that an earlier extraction to the same directory already did.
+ * <p>
+ * A marker file records the archive's size and last modified time, and each entry's CRC, size
+ * and time along with the size and last modified time of the file it was extracted to. If the
+ * archive is unchanged and every file is still as it was left, nothing is read from the archive.
+ * Otherwise only the entries which differ from the marker, or whose files have since been changed
+ * or removed, are written.
+ * </p>
+ * <p>
+ * The central directory is read once, every directory is created up front, and then the entries
+ * are inflated in parallel, each worker reading through its own {@link ZipFile} handle.
+ * </p>
+ * <p>
+ * Every entry is checked before anything is written, and an archive with an entry that would be
+ * written outside of the destination directory is rejected.
+ * </p>
+ */
+public class ZipExtractor {
+
+    /**
+     * Archives with less than this many compressed bytes to write are extracted on the calling thread.
+     */
+    public static final long PARALLEL_THRESHOLD = 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int parallelism;
+
+    public ZipExtractor() {
+
+        this( ThreadPoolService.getDefaultParallelism() );
+    }
+
+    /**
+     * @param parallelism The maximum number of entries to inflate at once.
+     */
+    public ZipExtractor(int parallelism) {
+
+        if ( parallelism < 1 ) {
+            throw new IllegalArgumentException( "Parallelism must be >= 1." );
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Extract the archive to the destination directory.
+     * @param src The archive.
+     * @param dest The destination directory.
+     * @param markerFile The marker for the destination directory.
+     * @return The number of entries written.
+     * @throws IOException
+     */
+    public int extract( File src, File dest, File markerFile ) throws IOException {
+
+        ExtractionMarker marker = loadMarker( markerFile, dest );
+        if ( marker != null && marker.isArchive( src ) && marker.isExtracted( dest ) ) {
+            return 0;
+        }
+
+        // a partial extraction must not look complete
+        markerFile.delete();
+
+        dest.mkdirs();
+        String destPath = dest.getCanonicalPath() + File.separator;
+
+        List<ZipEntry> zipEntries = new ArrayList<ZipEntry>();
+        List<File> files = new ArrayList<File>();
+        List<MarkedEntry> markedEntries = new ArrayList<MarkedEntry>();
+        List<Integer> pending = new ArrayList<Integer>();
+        long pendingSize = 0;
+
+        ZipFile zipFile = new ZipFile( src );
+        try {
+            Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
+            while (enumeration.hasMoreElements()) {
+
+                ZipEntry zipEntry = enumeration.nextElement();
+                zipEntries.add( zipEntry );
+
+                File file = getFile( dest, destPath, zipEntry );
+                files.add( file );
+
+                MarkedEntry markedEntry = marker == null ? null : marker.get( zipEntry.getName() );
+                if ( markedEntry != null && markedEntry.matches( zipEntry ) && markedEntry.isExtracted( file ) ) {
+                    markedEntries.add( markedEntry );
+                    continue;
+                }
+
+                markedEntries.add( null );
+                pending.add( zipEntries.size() - 1 );
+                pendingSize += Math.max( 0, zipEntry.getCompressedSize() );
+            }
+
+            createDirectories( dest, zipEntries, files, pending );
+
+            int threads = Math.min( parallelism, pending.size() );
+            if ( threads <= 1 || pendingSize < PARALLEL_THRESHOLD ) {
+                new ExtractTask( zipFile, zipEntries, files, pending, new AtomicInteger(), markedEntries ).call();
+            }
+            else {
+                extract( src, zipEntries, files, pending, markedEntries, threads );
+            }
+        }
+        finally {
+            zipFile.close();
+        }
+
+        ExtractionMarker _marker = new ExtractionMarker( src );
+        int written = 0;
+
+        // directories last, deepest first, so their times are not changed by the files written into them
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            int index = pending.get( i );
+            ZipEntry zipEntry = zipEntries.get( index );
+            if ( zipEntry.isDirectory() ) {
+                File file = files.get( index );
+                setLastModified( file, zipEntry );
+                markedEntries.set( index, new MarkedEntry( zipEntry, file.lastModified() ) );
+            }
+        }
+
+        for (int i = 0; i < zipEntries.size(); i++) {
+            MarkedEntry markedEntry = markedEntries.get( i );
+            if ( markedEntry != null ) {
+                _marker.put( markedEntry );
+            }
+        }
+        for (int index : pending) {
+            if ( markedEntries.get( index ) != null ) {
+                written++;
+            }
+        }
+
+        _marker.store( markerFile, dest );
+        return written;
+    }
+
+    private void extract( File src, List<ZipEntry> zipEntries, List<File> files, List<Integer> pending, List<MarkedEntry> markedEntries, int threads ) throws IOException {
+
+        AtomicInteger next = new AtomicInteger();
+
+        ExecutorService executorService = ThreadPoolService.newThreadPool( "hbc-unarchive", threads );
+        try {
+            CompletionService<Void> completionService = new ExecutorCompletionService<Void>( executorService );
+            for (int i = 0; i < threads; i++) {
+                completionService.submit( new WorkerTask( src, zipEntries, files, pending, next, markedEntries ) );
+            }
+            for (int i = 0; i < threads; i++) {
+                take( completionService );
+            }
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static void take( CompletionService<Void> completionService ) throws IOException {
+
+        try {
+            completionService.take().get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while extracting" );
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException( cause );
+        }
+    }
+
+    /**
+     * Create the directory entries, and the parents of the file entries, that are to be written.
+     */
+    private static void createDirectories( File dest, List<ZipEntry> zipEntries, List<File> files, List<Integer> pending ) {
+
+        // sorted, so that parents are created before their children
+        TreeSet<File> directories = new TreeSet<File>();
+
+        for (int index : pending) {
+            File file = files.get( index );
+            if ( zipEntries.get( index ).isDirectory() ) {
+                directories.add( file );
+            }
+            else if ( !dest.equals( file.getParentFile() ) ) {
+                directories.add( file.getParentFile() );
+            }
+        }
+
+        File previous = null;
+        for (File directory : directories) {
+
+            // the previous directory was a parent, so only the last level is missing
+            if ( previous != null && previous.equals( directory.getParentFile() ) ) {
+                directory.mkdir();
+            }
+            else {
+                directory.mkdirs();
+            }
+            previous = directory;
+        }
+    }
+
+    /**
+     * Return the file for the entry, checking that it is inside, or is, the destination directory.
+     * @param destPath The canonical path of the destination directory, ending with a separator.
+     */
+    private static File getFile( File dest, String destPath, ZipEntry zipEntry ) throws IOException {
+
+        File file = new File( dest, zipEntry.getName() );
+        String filePath = file.getCanonicalPath() + File.separator;
+        if ( !filePath.startsWith( destPath ) ) {
+            throw new IOException( "Entry is outside of the destination directory: " + zipEntry.getName() );
+        }
+        return file;
+    }
+
+    private ExtractionMarker loadMarker( File markerFile, File dest ) {
+
+        try {
+            return ExtractionMarker.load( markerFile, dest );
+        }
+        catch (IOException e) {
+            JoJoMojo.getMojo().getLog().debug( "Unable to read extraction marker: " + markerFile );
+            return null;
+        }
+    }
+
+    private static void setLastModified( File file, ZipEntry zipEntry ) {
+
+        if ( zipEntry.getTime() >= 0 ) {
+            file.setLastModified( zipEntry.getTime() );
+        }
+    }
+
+    /**
+     * Opens its own {@link ZipFile} handle and extracts entries until there are none left.
+     */
+    private static final class WorkerTask implements Callable<Void> {
+
+        private final File src;
+        private final List<ZipEntry> zipEntries;
+        private final List<File> files;
+        private final List<Integer> pending;
+        private final AtomicInteger next;
+        private final List<MarkedEntry> markedEntries;
+
+        public WorkerTask(File src, List<ZipEntry> zipEntries, List<File> files, List<Integer> pending, AtomicInteger next, List<MarkedEntry> markedEntries) {
+
+            this.src = src;
+            this.zipEntries = zipEntries;
+            this.files = files;
+            this.pending = pending;
+            this.next = next;
+            this.markedEntries = markedEntries;
+        }
+
+        @Override
+        public Void call() throws IOException {
+
+            ZipFile zipFile = new ZipFile( src );
+            try {
+                return new ExtractTask( zipFile, zipEntries, files, pending, next, markedEntries ).call();
+            }
+            finally {
+                zipFile.close();
+            }
+        }
+    }
+
+    /**
+     * Extracts pending file entries from a {@link ZipFile} until there are none left.
+     */
+    private static final class ExtractTask implements Callable<Void> {
+
+        private final ByteBuffer buffer = ByteBuffer.allocate( BUFFER_SIZE );
+
+        private final ZipFile zipFile;
+        private final List<ZipEntry> zipEntries;
+        private final List<File> files;
+        private final List<Integer> pending;
+        private final AtomicInteger next;
+        private final List<MarkedEntry> markedEntries;
+
+        public ExtractTask(ZipFile zipFile, List<ZipEntry> zipEntries, List<File> files, List<Integer> pending, AtomicInteger next, List<MarkedEntry> markedEntries) {
+
+            this.zipFile = zipFile;
+            this.zipEntries = zipEntries;
+            this.files = files;
+            this.pending = pending;
+            this.next = next;
+            this.markedEntries = markedEntries;
+        }
+
+        @Override
+        public Void call() throws IOException {
+
+            int i;
+            while (( i = next.getAndIncrement() ) < pending.size()) {
+
+                if ( Thread.currentThread().isInterrupted() ) {
+                    throw new IOException( "Interrupted while extracting" );
+                }
+
+                int index = pending.get( i );
+                ZipEntry zipEntry = zipEntries.get( index );
+                if ( zipEntry.isDirectory() ) {
+                    continue;
+                }
+
+                File file = files.get( index );
+                if ( extract( zipEntry, file ) ) {
+                    MarkedEntry markedEntry = new MarkedEntry( zipEntry, file.lastModified() );
+                    synchronized (markedEntries) {
+                        markedEntries.set( index, markedEntry );
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Write the entry to the file.
+         * @return false if the file could not be written.
+         */
+        private boolean extract( ZipEntry zipEntry, File file ) throws IOException {
+
+            InputStream inputStream = null;
+            FileOutputStream outputStream = null;
+            try {
+                inputStream = zipFile.getInputStream( zipEntry );
+                outputStream = new FileOutputStream( file );
+                FileChannel channel = outputStream.getChannel();
+
+                byte[] bytes = buffer.array();
+                int read;
+                while (( read = inputStream.read( bytes ) ) != -1) {
+                    buffer.clear();
+                    buffer.limit( read );
+                    while (buffer.hasRemaining()) {
+                        channel.write( buffer );
+                    }
+                }
+            }
+            catch (FileNotFoundException e) {
+                JoJoMojo.getMojo().getLog().warn( "Unable to expand to file " + file.getPath() );
+                return false;
+            }
+            finally {
+                IOUtil.close( outputStream );
+                IOUtil.close( inputStream );
+            }
+
+            setLastModified( file, zipEntry );
+            return true;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the central directory of a zip archive, including where each entry's data is, so
+ * that the stored or deflated data can be copied to another archive without inflating it.
+ */
+class ZipReader {
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+
+    private static final int PLATFORM_UNIX = 3;
+
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+
+    public ZipReader(File file) throws IOException {
+
+        randomAccessFile = new RandomAccessFile( file, "r" );
+        channel = randomAccessFile.getChannel();
+    }
+
+    public FileChannel getChannel() {
+
+        return channel;
+    }
+
+    public void close() throws IOException {
+
+        randomAccessFile.close();
+    }
+
+    /**
+     * Return the entries, in central directory order.
+     * @throws IOException
+     */
+    public List<Entry> getEntries() throws IOException {
+
+        long length = channel.size();
+
+        int tailLength = (int) Math.min( length, END_SIZE + MAX_COMMENT_LENGTH );
+        ByteBuffer tail = read( length - tailLength, tailLength );
+
+        int end = -1;
+        for (int i = tailLength - END_SIZE; i >= 0; i--) {
+            if ( tail.getInt( i ) == END_SIGNATURE ) {
+                end = i;
+                break;
+            }
+        }
+        if ( end == -1 ) {
+            throw new IOException( "Not a zip archive, no end of central directory" );
+        }
+
+        long count = tail.getShort( end + 10 ) & 0xFFFF;
+        long centralSize = tail.getInt( end + 12 ) & ZIP64_MAGIC;
+        long centralOffset = tail.getInt( end + 16 ) & ZIP64_MAGIC;
+
+        if ( count == ZIP64_MAGIC_COUNT || centralSize == ZIP64_MAGIC || centralOffset == ZIP64_MAGIC ) {
+            long endOffset = length - tailLength + end;
+            if ( endOffset >= ZIP64_LOCATOR_SIZE ) {
+                ByteBuffer locator = read( endOffset - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE );
+                if ( locator.getInt( 0 ) == ZIP64_LOCATOR_SIGNATURE ) {
+                    ByteBuffer zip64End = read( locator.getLong( 8 ), 56 );
+                    if ( zip64End.getInt( 0 ) != ZIP64_END_SIGNATURE ) {
+                        throw new IOException( "Invalid zip64 end of central directory" );
+                    }
+                    count = zip64End.getLong( 32 );
+                    centralSize = zip64End.getLong( 40 );
+                    centralOffset = zip64End.getLong( 48 );
+                }
+            }
+        }
+
+        if ( centralSize > Integer.MAX_VALUE || centralOffset + centralSize > length ) {
+            throw new IOException( "Invalid central directory" );
+        }
+
+        ByteBuffer central = read( centralOffset, (int) centralSize );
+        List<Entry> entries = new ArrayList<Entry>();
+
+        int position = 0;
+        for (long i = 0; i < count; i++) {
+
+            if ( central.getInt( position ) != CENTRAL_HEADER_SIGNATURE ) {
+                throw new IOException( "Invalid central directory header" );
+            }
+
+            Entry entry = new Entry();
+            entry.versionMadeBy = central.getShort( position + 4 ) & 0xFFFF;
+            entry.flags = central.getShort( position + 8 ) & 0xFFFF;
+            entry.method = central.getShort( position + 10 ) & 0xFFFF;
+            entry.dosTime = central.getInt( position + 12 );
+            entry.crc = central.getInt( position + 16 ) & ZIP64_MAGIC;
+            entry.compressedSize = central.getInt( position + 20 ) & ZIP64_MAGIC;
+            entry.size = central.getInt( position + 24 ) & ZIP64_MAGIC;
+            int nameLength = central.getShort( position + 28 ) & 0xFFFF;
+            int extraLength = central.getShort( position + 30 ) & 0xFFFF;
+            int commentLength = central.getShort( position + 32 ) & 0xFFFF;
+            entry.externalAttributes = central.getInt( position + 38 );
+            entry.localOffset = central.getInt( position + 42 ) & ZIP64_MAGIC;
+
+            byte[] name = new byte[nameLength];
+            central.position( position + CENTRAL_HEADER_SIZE );
+            central.get( name );
+            entry.name = new String( name, "UTF-8" );
+
+            readZip64Extra( central, position + CENTRAL_HEADER_SIZE + nameLength, extraLength, entry );
+
+            entries.add( entry );
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        return entries;
+    }
+
+    /**
+     * Return the position of the entry's stored or deflated data.
+     * @throws IOException
+     */
+    public long getDataOffset( Entry entry ) throws IOException {
+
+        ByteBuffer header = read( entry.localOffset, LOCAL_HEADER_SIZE );
+        if ( header.getInt( 0 ) != LOCAL_HEADER_SIGNATURE ) {
+            throw new IOException( "Invalid local header for " + entry.name );
+        }
+        int nameLength = header.getShort( 26 ) & 0xFFFF;
+        int extraLength = header.getShort( 28 ) & 0xFFFF;
+        return entry.localOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    }
+
+    private static void readZip64Extra( ByteBuffer buffer, int position, int length, Entry entry ) {
+
+        int end = position + length;
+        while (position + 4 <= end) {
+
+            int id = buffer.getShort( position ) & 0xFFFF;
+            int size = buffer.getShort( position + 2 ) & 0xFFFF;
+            position += 4;
+
+            if ( id == ZIP64_EXTRA_ID ) {
+                int field = position;
+                if ( entry.size == ZIP64_MAGIC && field + 8 <= end ) {
+                    entry.size = buffer.getLong( field );
+                    field += 8;
+                }
+                if ( entry.compressedSize == ZIP64_MAGIC && field + 8 <= end ) {
+                    entry.compressedSize = buffer.getLong( field );
+                    field += 8;
+                }
+                if ( entry.localOffset == ZIP64_MAGIC && field + 8 <= end ) {
+                    entry.localOffset = buffer.getLong( field );
+                }
+                return;
+            }
+
+            position += size;
+        }
+    }
+
+    private ByteBuffer read( long position, int length ) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate( length ).order( ByteOrder.LITTLE_ENDIAN );
+        while (buffer.hasRemaining()) {
+            if ( channel.read( buffer, position + buffer.position() ) == -1 ) {
+                throw new IOException( "Unexpected end of archive" );
+            }
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    static final class Entry {
+
+        private String name;
+        private int versionMadeBy;
+        private int flags;
+        private int method;
+        private int dosTime;
+        private long crc;
+        private long size;
+        private long compressedSize;
+        private int externalAttributes;
+        private long localOffset;
+
+        public String getName() {
+
+            return name;
+        }
+
+        public int getMethod() {
+
+            return method;
+        }
+
+        public int getDosTime() {
+
+            return dosTime;
+        }
+
+        public long getCrc() {
+
+            return crc;
+        }
+
+        public long getSize() {
+
+            return size;
+        }
+
+        public long getCompressedSize() {
+
+            return compressedSize;
+        }
+
+        public boolean isDirectory() {
+
+            return name.endsWith( "/" );
+        }
+
+        public boolean isEncrypted() {
+
+            return ( flags & 1 ) != 0;
+        }
+
+        /**
+         * Return the unix file mode, or the default mode if the archive was not created on unix.
+         */
+        public int getMode() {
+
+            int mode = externalAttributes >>> 16;
+            if ( ( versionMadeBy >> 8 ) == PLATFORM_UNIX && mode != 0 ) {
+                return mode;
+            }
+            return isDirectory() ? ZipWriter.DIRECTORY_MODE : ZipWriter.FILE_MODE;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.SelectorUtils;
+import org.hardisonbrewing.maven.core.PropertyResolver;
+import org.hardisonbrewing.maven.core.TemplateVariableFilter;
+import org.hardisonbrewing.maven.core.archive.ZipReader.Entry;
+
+/**
+ * Copies a zip archive to another, dropping, renaming and rewriting entries on the way,
+ * without extracting it to disk. Entries whose content is not rewritten are copied as they
+ * are stored, without being inflated and deflated again.
+ * <p>
+ * Patterns are matched against entry names with {@link SelectorUtils#matchPath(String, String, String, boolean)},
+ * using '/' as the separator. An entry matching a drop pattern is skipped. Otherwise it is renamed
+ * by the first matching rename, and its content rewritten by the first matching rewrite, both
+ * matched against its original name.
+ * </p>
+ */
+public class ZipTransformer {
+
+    private final List<String> drops = new ArrayList<String>();
+    private final Map<String, String> renames = new LinkedHashMap<String, String>();
+    private final Map<String, EntryRewriter> rewrites = new LinkedHashMap<String, EntryRewriter>();
+
+    private int level = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Set the compression level for rewritten entries that were deflated.
+     * @param level The {@link Deflater} compression level.
+     */
+    public void setLevel( int level ) {
+
+        this.level = level;
+    }
+
+    /**
+     * Skip the entries matching the pattern.
+     * @param pattern
+     */
+    public void drop( String pattern ) {
+
+        drops.add( pattern );
+    }
+
+    /**
+     * Rename an entry. If both names end with '/', every entry under the first directory is moved to the second.
+     * @param from The entry name.
+     * @param to The new entry name.
+     */
+    public void rename( String from, String to ) {
+
+        if ( from.endsWith( "/" ) != to.endsWith( "/" ) ) {
+            throw new IllegalArgumentException( "Cannot rename between a file and a directory: " + from + " to " + to );
+        }
+        renames.put( from, to );
+    }
+
+    /**
+     * Rewrite the content of the entries matching the pattern.
+     * @param pattern
+     * @param entryRewriter
+     */
+    public void rewrite( String pattern, EntryRewriter entryRewriter ) {
+
+        rewrites.put( pattern, entryRewriter );
+    }
+
+    /**
+     * Replace the template variables in the entries matching the pattern, which are read and written as UTF-8.
+     * @param pattern
+     * @param delimStart The start of a variable, such as "${".
+     * @param delimEnd The end of a variable, such as "}".
+     * @param propertyResolver The variable values.
+     * @see TemplateVariableFilter
+     */
+    public void expand( String pattern, String delimStart, String delimEnd, PropertyResolver propertyResolver ) {
+
+        rewrite( pattern, new TemplateRewriter( new TemplateVariableFilter( delimStart, delimEnd ), propertyResolver ) );
+    }
+
+    /**
+     * Copy the source archive to the destination archive.
+     * @param src The source archive.
+     * @param dest The destination archive.
+     * @return The number of entries whose content was rewritten.
+     * @throws IOException
+     */
+    public int transform( File src, File dest ) throws IOException {
+
+        if ( src.getCanonicalFile().equals( dest.getCanonicalFile() ) ) {
+            throw new IllegalArgumentException( "Cannot transform an archive in place: " + src );
+        }
+
+        File parent = dest.getParentFile();
+        if ( parent != null ) {
+            parent.mkdirs();
+        }
+
+        int rewritten = 0;
+        boolean success = false;
+
+        ZipReader zipReader = new ZipReader( src );
+        ZipFile zipFile = null;
+        FileOutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream( dest );
+            ZipWriter zipWriter = new ZipWriter( outputStream.getChannel() );
+            Set<String> names = new HashSet<String>();
+
+            for (Entry entry : zipReader.getEntries()) {
+
+                String name = entry.getName();
+                if ( matches( drops, name ) ) {
+                    continue;
+                }
+
+                String _name = rename( name );
+                if ( !names.add( _name ) ) {
+                    throw new IOException( "Duplicate entry " + _name + " in " + dest );
+                }
+
+                EntryRewriter entryRewriter = entry.isDirectory() ? null : getRewriter( name );
+                if ( entryRewriter == null ) {
+                    if ( entry.isEncrypted() ) {
+                        throw new IOException( "Encrypted entries are not supported: " + name );
+                    }
+                    long offset = zipReader.getDataOffset( entry );
+                    zipWriter.copy( _name, entry.getMode(), entry.getMethod(), entry.getDosTime(), entry.getCrc(), entry.getSize(), entry.getCompressedSize(), zipReader.getChannel(), offset );
+                    continue;
+                }
+
+                if ( zipFile == null ) {
+                    zipFile = new ZipFile( src );
+                }
+                write( zipWriter, zipFile, entry, _name, entryRewriter );
+                rewritten++;
+            }
+
+            zipWriter.finish();
+            success = true;
+        }
+        finally {
+            IOUtil.close( outputStream );
+            if ( zipFile != null ) {
+                zipFile.close();
+            }
+            zipReader.close();
+            if ( !success ) {
+                dest.delete();
+            }
+        }
+
+        return rewritten;
+    }
+
+    private void write( ZipWriter zipWriter, ZipFile zipFile, Entry entry, String name, EntryRewriter entryRewriter ) throws IOException {
+
+        ZipEntry zipEntry = zipFile.getEntry( entry.getName() );
+        if ( zipEntry == null ) {
+            throw new IOException( "Unable to read entry " + entry.getName() );
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        InputStream inputStream = null;
+        try {
+            inputStream = zipFile.getInputStream( zipEntry );
+            entryRewriter.rewrite( entry.getName(), inputStream, outputStream );
+        }
+        finally {
+            IOUtil.close( inputStream );
+        }
+
+        byte[] bytes = outputStream.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update( bytes );
+
+        if ( entry.getMethod() == ZipEntry.DEFLATED ) {
+            byte[] data = ZipCompressor.deflate( bytes, level );
+            if ( data != null ) {
+                zipWriter.write( name, entry.getMode(), ZipEntry.DEFLATED, entry.getDosTime(), crc.getValue(), bytes.length, data, data.length );
+                return;
+            }
+        }
+
+        zipWriter.write( name, entry.getMode(), ZipEntry.STORED, entry.getDosTime(), crc.getValue(), bytes.length, bytes, bytes.length );
+    }
+
+    private String rename( String name ) {
+
+        String renamed = renames.get( name );
+        if ( renamed != null ) {
+            return renamed;
+        }
+
+        for (Map.Entry<String, String> rename : renames.entrySet()) {
+            String from = rename.getKey();
+            if ( from.endsWith( "/" ) && name.startsWith( from ) ) {
+                return rename.getValue() + name.substring( from.length() );
+            }
+        }
+        return name;
+    }
+
+    private EntryRewriter getRewriter( String name ) {
+
+        for (Map.Entry<String, EntryRewriter> rewrite : rewrites.entrySet()) {
+            if ( match( rewrite.getKey(), name ) ) {
+                return rewrite.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches( List<String> patterns, String name ) {
+
+        for (String pattern : patterns) {
+            if ( match( pattern, name ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean match( String pattern, String name ) {
+
+        return SelectorUtils.matchPath( pattern, name, "/", true );
+    }
+
+    private static final class TemplateRewriter implements EntryRewriter {
+
+        private final TemplateVariableFilter templateVariableFilter;
+        private final PropertyResolver propertyResolver;
+
+        public TemplateRewriter(TemplateVariableFilter templateVariableFilter, PropertyResolver propertyResolver) {
+
+            this.templateVariableFilter = templateVariableFilter;
+            this.propertyResolver = propertyResolver;
+        }
+
+        @Override
+        public void rewrite( String name, InputStream inputStream, OutputStream outputStream ) throws IOException {
+
+            Reader reader = new InputStreamReader( inputStream, "UTF-8" );
+            Writer writer = new OutputStreamWriter( outputStream, "UTF-8" );
+            templateVariableFilter.filter( reader, writer, propertyResolver );
+            writer.flush();
+        }
+    }
+}
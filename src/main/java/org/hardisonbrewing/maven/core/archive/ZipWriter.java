@@ -0,0 +1,359 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.archive;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes zip entries whose data has already been stored or deflated, so entries can be
+ * compressed elsewhere, or copied from another archive, and written here in order.
+ * ZIP64 records are added when needed.
+ */
+class ZipWriter {
+
+    /**
+     * 1980-02-01 00:00:00, as a DOS date and time. The date is the same in every time zone.
+     */
+    public static final int NORMALIZED_DOS_TIME = ( 2 << 21 ) | ( 1 << 16 );
+
+    static final int DIRECTORY_MODE = 040755;
+    static final int FILE_MODE = 0100644;
+    static final int EXECUTABLE_MODE = 0100755;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int PLATFORM_UNIX = 3;
+
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+
+    private final List<Record> records = new ArrayList<Record>();
+
+    private final FileChannel channel;
+
+    public ZipWriter(FileChannel channel) {
+
+        this.channel = channel;
+    }
+
+    /**
+     * Write an entry whose data is already complete.
+     * @param name The entry name, using '/' separators.
+     * @param mode The unix file mode.
+     * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}.
+     * @param crc The CRC-32 of the uncompressed data.
+     * @param size The uncompressed size.
+     * @param data The stored or deflated data.
+     * @param length The length of the data.
+     * @throws IOException
+     */
+    public void write( String name, int mode, int method, long crc, long size, byte[] data, int length ) throws IOException {
+
+        write( name, mode, method, NORMALIZED_DOS_TIME, crc, size, data, length );
+    }
+
+    /**
+     * Write an entry whose data is already complete.
+     * @param name The entry name, using '/' separators.
+     * @param mode The unix file mode.
+     * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}.
+     * @param dosTime The DOS date and time.
+     * @param crc The CRC-32 of the uncompressed data.
+     * @param size The uncompressed size.
+     * @param data The stored or deflated data.
+     * @param length The length of the data.
+     * @throws IOException
+     */
+    public void write( String name, int mode, int method, int dosTime, long crc, long size, byte[] data, int length ) throws IOException {
+
+        Record record = newRecord( name, mode, method, dosTime, size >= ZIP64_MAGIC );
+        record.crc = crc;
+        record.size = size;
+        record.compressedSize = length;
+
+        writeLocalHeader( record );
+        writeFully( ByteBuffer.wrap( data, 0, length ) );
+    }
+
+    /**
+     * Begin an entry whose data the caller writes to the channel, and then finishes with {@link #end(Record, long, long, long)}.
+     * @param name The entry name, using '/' separators.
+     * @param mode The unix file mode.
+     * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}.
+     * @param zip64 Whether the entry may be 4GB or larger.
+     * @return
+     * @throws IOException
+     */
+    public Record begin( String name, int mode, int method, boolean zip64 ) throws IOException {
+
+        Record record = newRecord( name, mode, method, NORMALIZED_DOS_TIME, zip64 );
+        writeLocalHeader( record );
+        return record;
+    }
+
+    /**
+     * Write an entry by copying its stored or deflated data from another archive, without inflating it.
+     * @param name The entry name, using '/' separators.
+     * @param mode The unix file mode.
+     * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}.
+     * @param dosTime The DOS date and time.
+     * @param crc The CRC-32 of the uncompressed data.
+     * @param size The uncompressed size.
+     * @param compressedSize The length of the data.
+     * @param src The archive to copy from.
+     * @param position The position of the data in the archive.
+     * @throws IOException
+     */
+    public void copy( String name, int mode, int method, int dosTime, long crc, long size, long compressedSize, FileChannel src, long position ) throws IOException {
+
+        Record record = newRecord( name, mode, method, dosTime, size >= ZIP64_MAGIC || compressedSize >= ZIP64_MAGIC );
+        record.crc = crc;
+        record.size = size;
+        record.compressedSize = compressedSize;
+
+        writeLocalHeader( record );
+
+        long end = position + compressedSize;
+        while (position < end) {
+            long transferred = src.transferTo( position, end - position, channel );
+            if ( transferred <= 0 ) {
+                throw new IOException( "Unexpected end of archive while copying " + name );
+            }
+            position += transferred;
+        }
+    }
+
+    /**
+     * Finish an entry begun by {@link #begin(String, int, int, boolean)}, rewriting its local header with the final values.
+     */
+    public void end( Record record, long crc, long size, long compressedSize ) throws IOException {
+
+        if ( !record.zip64Local && ( size >= ZIP64_MAGIC || compressedSize >= ZIP64_MAGIC ) ) {
+            throw new IOException( "Entry " + new String( record.name, "UTF-8" ) + " is larger than 4GB" );
+        }
+
+        record.crc = crc;
+        record.size = size;
+        record.compressedSize = compressedSize;
+
+        long position = channel.position();
+        channel.position( record.offset );
+        writeLocalHeader( record );
+        channel.position( position );
+    }
+
+    /**
+     * Write the central directory. No entries may be written afterwards.
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+
+        long centralOffset = channel.position();
+
+        for (Record record : records) {
+
+            boolean zip64Size = record.size >= ZIP64_MAGIC || record.compressedSize >= ZIP64_MAGIC;
+            boolean zip64Offset = record.offset >= ZIP64_MAGIC;
+            int extraLength = 0;
+            if ( zip64Size ) {
+                extraLength += 16;
+            }
+            if ( zip64Offset ) {
+                extraLength += 8;
+            }
+            if ( extraLength > 0 ) {
+                extraLength += 4;
+            }
+            int version = extraLength > 0 || record.zip64Local ? VERSION_ZIP64 : VERSION;
+
+            ByteBuffer buffer = allocate( CENTRAL_HEADER_SIZE + record.name.length + extraLength );
+            buffer.putInt( CENTRAL_HEADER_SIGNATURE );
+            buffer.putShort( (short) ( ( PLATFORM_UNIX << 8 ) | version ) );
+            buffer.putShort( (short) version );
+            buffer.putShort( (short) FLAG_UTF8 );
+            buffer.putShort( (short) record.method );
+            buffer.putInt( record.dosTime );
+            buffer.putInt( (int) record.crc );
+            buffer.putInt( (int) ( zip64Size ? ZIP64_MAGIC : record.compressedSize ) );
+            buffer.putInt( (int) ( zip64Size ? ZIP64_MAGIC : record.size ) );
+            buffer.putShort( (short) record.name.length );
+            buffer.putShort( (short) extraLength );
+            buffer.putShort( (short) 0 ); // comment length
+            buffer.putShort( (short) 0 ); // disk number
+            buffer.putShort( (short) 0 ); // internal attributes
+            buffer.putInt( ( record.mode << 16 ) | ( record.isDirectory() ? 0x10 : 0 ) );
+            buffer.putInt( (int) ( zip64Offset ? ZIP64_MAGIC : record.offset ) );
+            buffer.put( record.name );
+            if ( extraLength > 0 ) {
+                buffer.putShort( (short) ZIP64_EXTRA_ID );
+                buffer.putShort( (short) ( extraLength - 4 ) );
+                if ( zip64Size ) {
+                    buffer.putLong( record.size );
+                    buffer.putLong( record.compressedSize );
+                }
+                if ( zip64Offset ) {
+                    buffer.putLong( record.offset );
+                }
+            }
+            buffer.flip();
+            writeFully( buffer );
+        }
+
+        long centralSize = channel.position() - centralOffset;
+        int count = records.size();
+
+        boolean zip64 = count >= ZIP64_MAGIC_COUNT || centralOffset >= ZIP64_MAGIC || centralSize >= ZIP64_MAGIC;
+        if ( zip64 ) {
+
+            long zip64EndOffset = channel.position();
+
+            ByteBuffer buffer = allocate( 56 + 20 );
+            buffer.putInt( ZIP64_END_SIGNATURE );
+            buffer.putLong( 44 );
+            buffer.putShort( (short) ( ( PLATFORM_UNIX << 8 ) | VERSION_ZIP64 ) );
+            buffer.putShort( (short) VERSION_ZIP64 );
+            buffer.putInt( 0 );
+            buffer.putInt( 0 );
+            buffer.putLong( count );
+            buffer.putLong( count );
+            buffer.putLong( centralSize );
+            buffer.putLong( centralOffset );
+
+            buffer.putInt( ZIP64_LOCATOR_SIGNATURE );
+            buffer.putInt( 0 );
+            buffer.putLong( zip64EndOffset );
+            buffer.putInt( 1 );
+            buffer.flip();
+            writeFully( buffer );
+        }
+
+        ByteBuffer buffer = allocate( 22 );
+        buffer.putInt( END_SIGNATURE );
+        buffer.putShort( (short) 0 );
+        buffer.putShort( (short) 0 );
+        buffer.putShort( (short) Math.min( count, ZIP64_MAGIC_COUNT ) );
+        buffer.putShort( (short) Math.min( count, ZIP64_MAGIC_COUNT ) );
+        buffer.putInt( (int) Math.min( centralSize, ZIP64_MAGIC ) );
+        buffer.putInt( (int) Math.min( centralOffset, ZIP64_MAGIC ) );
+        buffer.putShort( (short) 0 );
+        buffer.flip();
+        writeFully( buffer );
+    }
+
+    private void writeLocalHeader( Record record ) throws IOException {
+
+        boolean zip64 = record.zip64Local;
+
+        ByteBuffer buffer = allocate( LOCAL_HEADER_SIZE + record.name.length + ( zip64 ? 20 : 0 ) );
+        buffer.putInt( LOCAL_HEADER_SIGNATURE );
+        buffer.putShort( (short) ( zip64 ? VERSION_ZIP64 : VERSION ) );
+        buffer.putShort( (short) FLAG_UTF8 );
+        buffer.putShort( (short) record.method );
+        buffer.putInt( record.dosTime );
+        buffer.putInt( (int) record.crc );
+        buffer.putInt( (int) ( zip64 ? ZIP64_MAGIC : record.compressedSize ) );
+        buffer.putInt( (int) ( zip64 ? ZIP64_MAGIC : record.size ) );
+        buffer.putShort( (short) record.name.length );
+        buffer.putShort( (short) ( zip64 ? 20 : 0 ) );
+        buffer.put( record.name );
+        if ( zip64 ) {
+            buffer.putShort( (short) ZIP64_EXTRA_ID );
+            buffer.putShort( (short) 16 );
+            buffer.putLong( record.size );
+            buffer.putLong( record.compressedSize );
+        }
+        buffer.flip();
+        writeFully( buffer );
+    }
+
+    private Record newRecord( String name, int mode, int method, int dosTime, boolean zip64 ) throws IOException {
+
+        Record record = new Record( getBytes( name ), mode, method, dosTime, zip64 );
+        record.offset = channel.position();
+        records.add( record );
+        return record;
+    }
+
+    private void writeFully( ByteBuffer buffer ) throws IOException {
+
+        while (buffer.hasRemaining()) {
+            channel.write( buffer );
+        }
+    }
+
+    private static ByteBuffer allocate( int capacity ) {
+
+        return ByteBuffer.allocate( capacity ).order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    private static byte[] getBytes( String name ) throws UnsupportedEncodingException {
+
+        byte[] bytes = name.getBytes( "UTF-8" );
+        if ( bytes.length > 0xFFFF ) {
+            throw new IllegalArgumentException( "Entry name is too long: " + name );
+        }
+        return bytes;
+    }
+
+    static final class Record {
+
+        private final byte[] name;
+        private final int mode;
+        private final int method;
+        private final int dosTime;
+        private final boolean zip64Local;
+
+        private long offset;
+        private long crc;
+        private long size;
+        private long compressedSize;
+
+        private Record(byte[] name, int mode, int method, int dosTime, boolean zip64Local) {
+
+            this.name = name;
+            this.mode = mode;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.zip64Local = zip64Local;
+        }
+
+        private boolean isDirectory() {
+
+            return name.length > 0 && name[name.length - 1] == '/';
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+import org.hardisonbrewing.maven.core.JoJoMojo;
+
+/**
+ * Writes the lines from its {@link StreamConsumer}s to the {@link Log} on a separate thread, so
+ * that a process writing faster than the log can keep up does not block on a full pipe.
+ * <p>
+ * Lines wait in a bounded buffer, which the writer drains in batches. When the buffer is full
+ * the oldest line at the lowest level waiting is dropped, so debug lines go first and error lines
+ * last, unless the new line is at a lower level still, in which case it is dropped instead. The
+ * last lines received are kept, whether dropped or not, for reporting a failure. {@link #close()} must be called once the process has exited to write what is left.
+ * </p>
+ */
+public class AsyncLogWriter {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final int DEFAULT_TAIL_SIZE = 100;
+
+    private static final int BATCH_SIZE = 256;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final Object lock = new Object();
+
+    private final int[] levels;
+    private final String[] lines;
+    private final String[] tail;
+
+    private final Log log;
+    private final Thread thread;
+
+    private int head;
+    private int size;
+    private final int[] levelCounts = new int[LogStreamConsumer.LEVEL_ERROR + 1];
+    private int tailIndex;
+    private long received;
+    private long written;
+    private long dropped;
+    private boolean closed;
+
+    private long start;
+    private long end;
+
+    public AsyncLogWriter() {
+
+        this( JoJoMojo.getMojo().getLog(), DEFAULT_CAPACITY, DEFAULT_TAIL_SIZE );
+    }
+
+    /**
+     * @param log The {@link Log} to write to.
+     * @param capacity The maximum number of lines waiting to be written.
+     * @param tailSize The number of last lines to keep.
+     */
+    public AsyncLogWriter(Log log, int capacity, int tailSize) {
+
+        if ( capacity < 1 ) {
+            throw new IllegalArgumentException( "Capacity must be >= 1." );
+        }
+        if ( tailSize < 0 ) {
+            throw new IllegalArgumentException( "Tail size must be >= 0." );
+        }
+
+        this.log = log;
+
+        levels = new int[capacity];
+        lines = new String[capacity];
+        tail = new String[tailSize];
+
+        start = System.currentTimeMillis();
+
+        thread = new Thread( new Runnable() {
+
+            @Override
+            public void run() {
+
+                write();
+            }
+        }, "hbc-log-" + threadCount.incrementAndGet() );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    /**
+     * Return a {@link StreamConsumer} that writes its lines at the specified level.
+     * @param level One of the {@link LogStreamConsumer} levels.
+     * @return
+     */
+    public StreamConsumer newConsumer( final int level ) {
+
+        if ( level < LogStreamConsumer.LEVEL_DEBUG || level > LogStreamConsumer.LEVEL_ERROR ) {
+            throw new IllegalArgumentException( "Unknown level: " + level );
+        }
+
+        return new StreamConsumer() {
+
+            @Override
+            public void consumeLine( String line ) {
+
+                offer( level, line );
+            }
+        };
+    }
+
+    private void offer( int level, String line ) {
+
+        synchronized (lock) {
+
+            received++;
+
+            if ( tail.length > 0 ) {
+                tail[tailIndex] = line;
+                tailIndex = ( tailIndex + 1 ) % tail.length;
+            }
+
+            if ( closed ) {
+                dropped++;
+                return;
+            }
+
+            if ( size == lines.length ) {
+                dropped++;
+                int lowest = getLowestLevel();
+                if ( level < lowest ) {
+                    return;
+                }
+                evict( lowest );
+            }
+
+            int index = ( head + size ) % lines.length;
+            levels[index] = level;
+            lines[index] = line;
+            size++;
+            levelCounts[level]++;
+
+            lock.notifyAll();
+        }
+    }
+
+    private int getLowestLevel() {
+
+        int level = 0;
+        while (levelCounts[level] == 0) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Remove the oldest line at the specified level.
+     */
+    private void evict( int level ) {
+
+        int victim = 0;
+        while (levels[( head + victim ) % lines.length] != level) {
+            victim++;
+        }
+        levelCounts[level]--;
+
+        // close the gap, moving the older lines forward one place
+        for (int i = victim; i > 0; i--) {
+            int to = ( head + i ) % lines.length;
+            int from = ( head + i - 1 ) % lines.length;
+            levels[to] = levels[from];
+            lines[to] = lines[from];
+        }
+        lines[head] = null;
+        head = ( head + 1 ) % lines.length;
+        size--;
+    }
+
+    private void write() {
+
+        List<String> batch = new ArrayList<String>( BATCH_SIZE );
+        int[] batchLevels = new int[BATCH_SIZE];
+
+        while (true) {
+
+            synchronized (lock) {
+                while (size == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    }
+                    catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                if ( size == 0 ) {
+                    end = System.currentTimeMillis();
+                    lock.notifyAll();
+                    return;
+                }
+
+                while (size > 0 && batch.size() < BATCH_SIZE) {
+                    batchLevels[batch.size()] = levels[head];
+                    batch.add( lines[head] );
+                    levelCounts[levels[head]]--;
+                    lines[head] = null;
+                    head = ( head + 1 ) % lines.length;
+                    size--;
+                }
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                LogStreamConsumer.log( log, batchLevels[i], batch.get( i ) );
+            }
+
+            synchronized (lock) {
+                written += batch.size();
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Write the lines still waiting and stop the writer thread. Lines received afterwards are dropped.
+     * @throws InterruptedException
+     */
+    public void close() throws InterruptedException {
+
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+
+        thread.join();
+
+        if ( log.isDebugEnabled() ) {
+            log.debug( toString() );
+        }
+    }
+
+    /**
+     * Return the last lines received, oldest first, including any that were dropped.
+     * @return
+     */
+    public List<String> getTail() {
+
+        synchronized (lock) {
+            List<String> _tail = new ArrayList<String>( tail.length );
+            for (int i = 0; i < tail.length; i++) {
+                String line = tail[( tailIndex + i ) % tail.length];
+                if ( line != null ) {
+                    _tail.add( line );
+                }
+            }
+            return _tail;
+        }
+    }
+
+    public long getReceived() {
+
+        synchronized (lock) {
+            return received;
+        }
+    }
+
+    public long getWritten() {
+
+        synchronized (lock) {
+            return written;
+        }
+    }
+
+    public long getDropped() {
+
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+
+    /**
+     * Return the number of lines written per second, since this writer was created until it was closed.
+     * @return
+     */
+    public double getThroughput() {
+
+        synchronized (lock) {
+            long elapsed = ( end == 0 ? System.currentTimeMillis() : end ) - start;
+            return written * 1000.0 / Math.max( 1, elapsed );
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuffer stringBuffer = new StringBuffer();
+        stringBuffer.append( "Logged " );
+        stringBuffer.append( getWritten() );
+        stringBuffer.append( " of " );
+        stringBuffer.append( getReceived() );
+        stringBuffer.append( " lines, " );
+        stringBuffer.append( getDropped() );
+        stringBuffer.append( " dropped, " );
+        stringBuffer.append( Math.round( getThroughput() ) );
+        stringBuffer.append( " lines/s" );
+        return stringBuffer.toString();
+    }
+}
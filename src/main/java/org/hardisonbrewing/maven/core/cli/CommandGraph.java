@@ -0,0 +1,357 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.cli;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+import org.hardisonbrewing.maven.core.FileUtils;
+import org.hardisonbrewing.maven.core.JoJoMojo;
+
+/**
+ * Runs {@link Commandline}s that depend on each other. A command starts once every command it
+ * depends on has finished, and commands that do not depend on each other run at the same time,
+ * limited by the {@link CommandScheduler}.
+ * <p>
+ * A command with outputs is skipped if every output exists and none of its inputs were modified
+ * after the oldest output, counting every file below a directory output. Once a command fails no
+ * more commands are started; the running commands are left to finish and then the failure is thrown
+ * as it is by {@link JoJoMojo#execute(Commandline)}.
+ * </p>
+ */
+public class CommandGraph {
+
+    private final List<Node> nodes = new ArrayList<Node>();
+
+    /**
+     * Add a {@link Commandline} whose output is logged.
+     * @param commandLine
+     * @return The node, to declare dependencies, inputs and outputs on.
+     */
+    public Node add( Commandline commandLine ) {
+
+        StreamConsumer systemOut = new LogStreamConsumer( LogStreamConsumer.LEVEL_INFO );
+        StreamConsumer systemErr = new LogStreamConsumer( LogStreamConsumer.LEVEL_ERROR );
+        return add( commandLine, systemOut, systemErr );
+    }
+
+    public Node add( Commandline commandLine, StreamConsumer systemOut, StreamConsumer systemErr ) {
+
+        Node node = new Node( commandLine, systemOut, systemErr );
+        nodes.add( node );
+        return node;
+    }
+
+    public List<Node> getNodes() {
+
+        return Collections.unmodifiableList( nodes );
+    }
+
+    /**
+     * Run the commands on the default {@link CommandScheduler}.
+     * @return The number of commands run, not counting those that were up to date.
+     * @see CommandLineService#getCommandScheduler()
+     */
+    public int execute() {
+
+        return execute( CommandLineService.getCommandScheduler() );
+    }
+
+    /**
+     * Run the commands on the specified {@link CommandScheduler}.
+     * @param commandScheduler
+     * @return The number of commands run, not counting those that were up to date.
+     */
+    public int execute( CommandScheduler commandScheduler ) {
+
+        LinkedList<Node> ready = new LinkedList<Node>();
+
+        for (Node node : nodes) {
+            node.successors.clear();
+        }
+        for (Node node : nodes) {
+            for (Node dependency : node.dependencies) {
+                if ( dependency.graph != this ) {
+                    throw new IllegalStateException( "Dependency is not part of this graph: " + dependency );
+                }
+                dependency.successors.add( node );
+            }
+            node.waiting = node.dependencies.size();
+            if ( node.waiting == 0 ) {
+                ready.add( node );
+            }
+        }
+
+        checkCycles( ready );
+
+        Log log = JoJoMojo.getMojo().getLog();
+        BlockingQueue<NodeHandle> completed = new LinkedBlockingQueue<NodeHandle>();
+
+        List<NodeHandle> running = new ArrayList<NodeHandle>();
+        IllegalStateException failure = null;
+        int finished = 0;
+        int executed = 0;
+
+        try {
+            while (finished < nodes.size()) {
+
+                while (failure == null && !ready.isEmpty()) {
+                    Node node = ready.removeFirst();
+                    if ( node.isUpToDate() ) {
+                        log.info( "Skipping up to date command: " + node );
+                        finished++;
+                        release( node, ready );
+                        continue;
+                    }
+                    log.info( node.toString() );
+                    NodeHandle nodeHandle = new NodeHandle( node, completed );
+                    running.add( nodeHandle );
+                    commandScheduler.submit( nodeHandle );
+                    executed++;
+                }
+
+                if ( running.isEmpty() ) {
+                    break;
+                }
+
+                NodeHandle nodeHandle = completed.take();
+                running.remove( nodeHandle );
+                finished++;
+
+                IllegalStateException exception = getFailure( nodeHandle );
+                if ( exception != null ) {
+                    if ( failure == null ) {
+                        failure = exception;
+                    }
+                    continue;
+                }
+                release( nodeHandle.node, ready );
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (NodeHandle nodeHandle : running) {
+                nodeHandle.cancel( true );
+            }
+            throw new IllegalStateException( e );
+        }
+
+        if ( failure != null ) {
+            throw failure;
+        }
+        return executed;
+    }
+
+    /**
+     * Walk the graph without running anything, to fail before the first command if it can never finish.
+     */
+    private void checkCycles( List<Node> ready ) {
+
+        for (Node node : nodes) {
+            node.pending = node.waiting;
+        }
+
+        LinkedList<Node> queue = new LinkedList<Node>( ready );
+        int visited = 0;
+        while (!queue.isEmpty()) {
+            Node node = queue.removeFirst();
+            visited++;
+            for (Node successor : node.successors) {
+                if ( --successor.pending == 0 ) {
+                    queue.add( successor );
+                }
+            }
+        }
+
+        if ( visited < nodes.size() ) {
+            throw new IllegalStateException( "The commands have a dependency cycle." );
+        }
+    }
+
+    private static void release( Node node, LinkedList<Node> ready ) {
+
+        for (Node successor : node.successors) {
+            if ( --successor.waiting == 0 ) {
+                ready.add( successor );
+            }
+        }
+    }
+
+    private static IllegalStateException getFailure( NodeHandle nodeHandle ) throws InterruptedException {
+
+        int exitValue;
+        try {
+            exitValue = nodeHandle.waitFor();
+        }
+        catch (CommandLineException e) {
+            return new IllegalStateException( e.getCause() == null ? e : e.getCause() );
+        }
+        catch (RuntimeException e) {
+            return new IllegalStateException( e );
+        }
+
+        if ( exitValue != 0 ) {
+            return new IllegalStateException( "Command exited with value[" + exitValue + "]" );
+        }
+        return null;
+    }
+
+    /**
+     * A {@link Commandline} in a {@link CommandGraph}.
+     */
+    public final class Node {
+
+        private final List<Node> dependencies = new ArrayList<Node>();
+        private final List<Node> successors = new ArrayList<Node>();
+        private final List<File> inputs = new ArrayList<File>();
+        private final List<File> outputs = new ArrayList<File>();
+
+        private final CommandGraph graph = CommandGraph.this;
+
+        private final Commandline commandLine;
+        private final StreamConsumer systemOut;
+        private final StreamConsumer systemErr;
+
+        private int waiting;
+        private int pending;
+
+        private Node(Commandline commandLine, StreamConsumer systemOut, StreamConsumer systemErr) {
+
+            this.commandLine = commandLine;
+            this.systemOut = systemOut;
+            this.systemErr = systemErr;
+        }
+
+        public Commandline getCommandline() {
+
+            return commandLine;
+        }
+
+        /**
+         * Run this command only after the specified command has finished.
+         * @param node
+         */
+        public void dependsOn( Node node ) {
+
+            if ( node == this ) {
+                throw new IllegalArgumentException( "A command cannot depend on itself." );
+            }
+            dependencies.add( node );
+        }
+
+        /**
+         * Declare a file, or directory, that this command reads.
+         * @param file
+         */
+        public void addInput( File file ) {
+
+            inputs.add( file );
+        }
+
+        /**
+         * Declare a file, or directory, that this command writes.
+         * @param file
+         */
+        public void addOutput( File file ) {
+
+            outputs.add( file );
+        }
+
+        /**
+         * Return true if this command has outputs, they all exist, and no input was modified after the
+         * oldest of them. For a directory output, that is the oldest file below it.
+         * @return
+         */
+        public boolean isUpToDate() {
+
+            if ( outputs.isEmpty() ) {
+                return false;
+            }
+
+            long oldest = Long.MAX_VALUE;
+            for (File output : outputs) {
+                if ( !output.exists() ) {
+                    return false;
+                }
+                oldest = Math.min( oldest, getOldestModified( output ) );
+            }
+
+            for (File input : inputs) {
+                if ( !input.exists() || FileUtils.isModifiedSince( input, oldest ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+
+            return commandLine.toString();
+        }
+    }
+
+    /**
+     * Return the last modified time of the file, or of the oldest file below it if it is a directory.
+     */
+    private static long getOldestModified( File file ) {
+
+        if ( !file.isDirectory() ) {
+            return file.lastModified();
+        }
+
+        File[] files = FileUtils.listFilesRecursive( file );
+        if ( files.length == 0 ) {
+            return file.lastModified();
+        }
+
+        long oldest = Long.MAX_VALUE;
+        for (File _file : files) {
+            oldest = Math.min( oldest, _file.lastModified() );
+        }
+        return oldest;
+    }
+
+    private static final class NodeHandle extends CommandHandle {
+
+        private final Node node;
+        private final BlockingQueue<NodeHandle> completed;
+
+        public NodeHandle(Node node, BlockingQueue<NodeHandle> completed) {
+
+            super( node.commandLine, node.systemOut, node.systemErr );
+
+            this.node = node;
+            this.completed = completed;
+        }
+
+        @Override
+        protected void done() {
+
+            completed.add( this );
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.cli;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * A {@link Commandline} that runs in the background. The result is the exit value.
+ * <p>
+ * The process is started, and its output pumped to the {@link StreamConsumer}s, when the handle is run
+ * by a {@link CommandScheduler}. Cancelling the handle before then stops it from starting, and cancelling
+ * it with interruption while it runs destroys the process.
+ * </p>
+ */
+public class CommandHandle extends FutureTask<Integer> {
+
+    private final Commandline commandLine;
+
+    public CommandHandle(final Commandline commandLine, final StreamConsumer systemOut, final StreamConsumer systemErr) {
+
+        super( new Callable<Integer>() {
+
+            @Override
+            public Integer call() throws CommandLineException {
+
+                // destroys the process if this thread is interrupted while waiting for it
+                return CommandLineUtils.executeCommandLineAsCallable( commandLine, null, systemOut, systemErr, 0 ).call();
+            }
+        } );
+
+        this.commandLine = commandLine;
+    }
+
+    public Commandline getCommandline() {
+
+        return commandLine;
+    }
+
+    /**
+     * Wait for the command to exit.
+     * @return The exit value.
+     * @throws CommandLineException If the command could not be run, or was cancelled.
+     * @throws InterruptedException
+     */
+    public int waitFor() throws CommandLineException, InterruptedException {
+
+        try {
+            return get();
+        }
+        catch (CancellationException e) {
+            throw new CommandLineException( "Command was cancelled: " + commandLine );
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof CommandLineException ) {
+                throw (CommandLineException) cause;
+            }
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new CommandLineException( cause.getMessage(), cause );
+        }
+    }
+}
@@ -18,7 +18,6 @@ package org.hardisonbrewing.maven.core.cli;
 
 import java.io.File;
 import java.util.List;
-import java.util.Properties;
 
 import org.apache.commons.cli.CommandLine;
 import org.codehaus.plexus.util.cli.CommandLineException;
@@ -33,53 +32,122 @@ import org.hardisonbrewing.maven.core.cli.shell.HBCShell;
  */
 public class CommandLineService {
 
+    private static CommandScheduler commandScheduler;
+
     protected CommandLineService() {
 
         // do nothing
     }
 
+    /**
+     * Return the value of an environment variable for the {@link Commandline}, or null if it is not set or empty.
+     * @param commandLine
+     * @param key
+     * @return
+     */
     public static final String getEnvVar( Commandline commandLine, String key ) {
 
-        try {
-            Properties systemEnvVars = commandLine.getSystemEnvVars();
-            String value = systemEnvVars.getProperty( key );
-            return value == null || value.length() == 0 ? null : value;
-        }
-        catch (Exception e) {
-            throw new IllegalStateException( e.getMessage() );
-        }
+        String value = getEnvironment( commandLine ).get( key );
+        return value == null || value.length() == 0 ? null : value;
     }
 
+    /**
+     * Add the value to the front of a {@link File#pathSeparator} separated environment variable.
+     * @param commandLine
+     * @param key
+     * @param value
+     * @deprecated The value is prepended, despite the name. Use {@link #prependPath(Commandline, String, String)}.
+     */
+    @Deprecated
     public static final void appendEnvVar( Commandline commandLine, String key, String value ) {
 
-        try {
-            Properties systemEnvVars = commandLine.getSystemEnvVars();
-            String _value = systemEnvVars.getProperty( key );
-            commandLine.addEnvironment( key, value + File.pathSeparator + _value );
+        prependPath( commandLine, key, value );
+    }
+
+    /**
+     * Add the value to the front of a {@link File#pathSeparator} separated environment variable, such as PATH.
+     * @param commandLine
+     * @param key
+     * @param value
+     */
+    public static final void prependPath( Commandline commandLine, String key, String value ) {
+
+        setEnvironment( commandLine, key, getEnvironment( commandLine ).prependPath( key, value ) );
+    }
+
+    /**
+     * Add the value to the end of a {@link File#pathSeparator} separated environment variable, such as PATH.
+     * @param commandLine
+     * @param key
+     * @param value
+     */
+    public static final void appendPath( Commandline commandLine, String key, String value ) {
+
+        setEnvironment( commandLine, key, getEnvironment( commandLine ).appendPath( key, value ) );
+    }
+
+    /**
+     * Return the {@link Environment} for the {@link Commandline}. For a {@link Commandline} not
+     * built by this service, only the system environment is known.
+     * @param commandLine
+     * @return
+     */
+    public static final Environment getEnvironment( Commandline commandLine ) {
+
+        if ( commandLine instanceof HBCCommandline ) {
+            return ( (HBCCommandline) commandLine ).getEnvironment();
         }
-        catch (Exception e) {
-            throw new IllegalStateException( e.getMessage() );
+        return Environment.getSystem();
+    }
+
+    private static void setEnvironment( Commandline commandLine, String key, Environment environment ) {
+
+        if ( commandLine instanceof HBCCommandline ) {
+            ( (HBCCommandline) commandLine ).setEnvironment( environment );
+        }
+        else {
+            commandLine.addEnvironment( key, environment.get( key ) );
         }
     }
 
     /**
-     * Build a {@link CommandLine} instance for the specified arguments.
+     * Build a {@link CommandLine} instance for the specified arguments, which starts the executable directly.
      * </br>The default working directory will be set to {@link ProjectService.getBaseDir()}.
      * @param cmd The arguments for the {@link CommandLine}.
      * @return
      * @throws CommandLineException
+     * @see DirectCommandline
      */
     public static final Commandline build( List<String> cmd ) throws CommandLineException {
 
+        return build( cmd, false );
+    }
+
+    /**
+     * Build a {@link CommandLine} instance for the specified arguments.
+     * </br>The default working directory will be set to {@link ProjectService.getBaseDir()}.
+     * @param cmd The arguments for the {@link CommandLine}.
+     * @param shell true to run the command through /bin/sh, for callers that need shell features.
+     * @return
+     * @throws CommandLineException
+     */
+    public static final Commandline build( List<String> cmd, boolean shell ) throws CommandLineException {
+
         if ( cmd.isEmpty() ) {
             throw new CommandLineException( "Argument length must be >= 1. The executable is the first element." );
         }
 
-        Commandline commandLine = new Commandline();
-        commandLine.setShell( new org.hardisonbrewing.maven.core.cli.BourneShell() );
+        Commandline commandLine;
+        if ( shell ) {
+            commandLine = new HBCCommandline();
+            commandLine.setShell( new HBCShell() );
+        }
+        else {
+            commandLine = new DirectCommandline();
+        }
+
         commandLine.setWorkingDirectory( ProjectService.getBaseDir() );
         commandLine.setExecutable( cmd.get( 0 ) );
-        commandLine.setShell( new HBCShell() );
 
         for (int i = 1; i < cmd.size(); i++) {
             commandLine.createArg().setValue( cmd.get( i ) );
@@ -109,4 +177,36 @@ public class CommandLineService {
 
         return CommandLineUtils.executeCommandLine( commandLine, systemOut, systemErr );
     }
+
+    /**
+     * Start the specified {@link CommandLine} in the background on the default {@link CommandScheduler}.
+     * @param commandLine The {@link CommandLine} to execute.
+     * @return The handle for the command, whose result is the exit value.
+     * @see #getCommandScheduler()
+     */
+    public static final CommandHandle executeAsync( Commandline commandLine, StreamConsumer systemOut, StreamConsumer systemErr ) {
+
+        return getCommandScheduler().submit( commandLine, systemOut, systemErr );
+    }
+
+    /**
+     * Return the default {@link CommandScheduler}, which runs one command per available processor at once.
+     * @return
+     */
+    public static final synchronized CommandScheduler getCommandScheduler() {
+
+        if ( commandScheduler == null ) {
+            commandScheduler = new CommandScheduler();
+        }
+        return commandScheduler;
+    }
+
+    /**
+     * Replace the default {@link CommandScheduler}, for example to change how many commands run at once.
+     * @param commandScheduler
+     */
+    public static final synchronized void setCommandScheduler( CommandScheduler commandScheduler ) {
+
+        CommandLineService.commandScheduler = commandScheduler;
+    }
 }
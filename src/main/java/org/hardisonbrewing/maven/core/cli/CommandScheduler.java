@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+import org.hardisonbrewing.maven.core.ThreadPoolService;
+
+/**
+ * Runs {@link Commandline}s in the background, at most a fixed number at once. Commands
+ * submitted beyond the limit wait, in order, for a running command to exit.
+ */
+public class CommandScheduler {
+
+    private final List<CommandHandle> handles = new ArrayList<CommandHandle>();
+
+    private final ExecutorService executorService;
+
+    public CommandScheduler() {
+
+        this( ThreadPoolService.getDefaultParallelism() );
+    }
+
+    /**
+     * @param concurrency The maximum number of commands to run at once.
+     */
+    public CommandScheduler(int concurrency) {
+
+        if ( concurrency < 1 ) {
+            throw new IllegalArgumentException( "Concurrency must be >= 1." );
+        }
+        executorService = ThreadPoolService.newThreadPool( "hbc-command", concurrency );
+    }
+
+    /**
+     * Schedule the {@link Commandline} to run.
+     * @param commandLine
+     * @param systemOut
+     * @param systemErr
+     * @return The handle for the command.
+     */
+    public CommandHandle submit( Commandline commandLine, StreamConsumer systemOut, StreamConsumer systemErr ) {
+
+        return submit( new CommandHandle( commandLine, systemOut, systemErr ) );
+    }
+
+    /**
+     * Schedule the {@link CommandHandle} to run.
+     * @param commandHandle
+     * @return The same handle.
+     */
+    public CommandHandle submit( CommandHandle commandHandle ) {
+
+        synchronized (handles) {
+            // forget the commands that have already finished
+            for (int i = handles.size() - 1; i >= 0; i--) {
+                if ( handles.get( i ).isDone() ) {
+                    handles.remove( i );
+                }
+            }
+            handles.add( commandHandle );
+        }
+
+        executorService.execute( commandHandle );
+        return commandHandle;
+    }
+
+    /**
+     * Cancel every command that has not finished, destroying those that are running.
+     */
+    public void cancelAll() {
+
+        List<CommandHandle> _handles;
+        synchronized (handles) {
+            _handles = new ArrayList<CommandHandle>( handles );
+            handles.clear();
+        }
+
+        for (CommandHandle commandHandle : _handles) {
+            commandHandle.cancel( true );
+        }
+    }
+
+    /**
+     * Stop accepting commands. Commands already submitted still run.
+     */
+    public void shutdown() {
+
+        executorService.shutdown();
+    }
+}
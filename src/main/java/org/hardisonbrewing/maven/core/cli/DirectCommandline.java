@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import org.codehaus.plexus.util.Os;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+
+/**
+ * A {@link Commandline} that starts its executable directly with a {@link ProcessBuilder}, rather than
+ * through a shell. The arguments are passed as they are, with no quoting, and the working directory and
+ * environment are set on the process itself.
+ * <p>
+ * An executable without a path is looked up on the PATH the command was given, as a shell would, so that
+ * changes made with {@link CommandLineService#prependPath(Commandline, String, String)} still apply. On
+ * Windows the extensions in PATHEXT are tried too. If the command has a PATH and the executable is not on
+ * it, the command fails rather than falling back to the PATH of this process.
+ * </p>
+ */
+public class DirectCommandline extends HBCCommandline {
+
+    private static final String PATH = "PATH";
+    private static final String PATHEXT = "PATHEXT";
+
+    private static final String DEFAULT_PATHEXT = ".COM;.EXE;.BAT;.CMD";
+
+    private String executable;
+
+    @Override
+    public void setExecutable( String executable ) {
+
+        super.setExecutable( executable );
+        this.executable = executable;
+    }
+
+    @Override
+    public String getExecutable() {
+
+        return executable;
+    }
+
+    @Override
+    public String[] getCommandline() {
+
+        String[] arguments = getArguments();
+        if ( executable == null ) {
+            return arguments;
+        }
+
+        String[] commandline = new String[arguments.length + 1];
+        commandline[0] = executable;
+        System.arraycopy( arguments, 0, commandline, 1, arguments.length );
+        return commandline;
+    }
+
+    @Override
+    public Process execute() throws CommandLineException {
+
+        if ( executable == null ) {
+            throw new CommandLineException( "No executable specified." );
+        }
+
+        File workingDirectory = getWorkingDirectory();
+        if ( workingDirectory != null && !workingDirectory.exists() ) {
+            throw new CommandLineException( "Working directory \"" + workingDirectory.getPath() + "\" does not exist!" );
+        }
+
+        ProcessBuilder processBuilder = new ProcessBuilder( getCommandline() );
+        processBuilder.directory( workingDirectory );
+
+        Map<String, String> environment = processBuilder.environment();
+        environment.clear();
+        environment.putAll( getEnvironment().toMap() );
+
+        String path = environment.get( PATH );
+        if ( path != null && !hasPath( executable ) ) {
+            String filePath = findExecutable( executable, path, getExtensions( executable, environment ) );
+            if ( filePath == null ) {
+                throw new CommandLineException( "Executable \"" + executable + "\" was not found on the PATH: " + path );
+            }
+            processBuilder.command().set( 0, filePath );
+        }
+
+        try {
+            return processBuilder.start();
+        }
+        catch (IOException e) {
+            throw new CommandLineException( "Error while executing process.", e );
+        }
+    }
+
+    private static boolean hasPath( String executable ) {
+
+        return executable.indexOf( '/' ) != -1 || executable.indexOf( File.separatorChar ) != -1;
+    }
+
+    /**
+     * Return the extensions to try adding to the executable's name, in order. On Windows these come from
+     * PATHEXT, and the name is only tried as it is if it already has an extension, as it cannot be
+     * started otherwise.
+     */
+    private static List<String> getExtensions( String executable, Map<String, String> environment ) {
+
+        List<String> extensions = new ArrayList<String>();
+
+        if ( !Os.isFamily( Os.FAMILY_WINDOWS ) || executable.indexOf( '.' ) != -1 ) {
+            extensions.add( "" );
+        }
+
+        if ( Os.isFamily( Os.FAMILY_WINDOWS ) ) {
+            String pathext = environment.get( PATHEXT );
+            if ( pathext == null || pathext.length() == 0 ) {
+                pathext = DEFAULT_PATHEXT;
+            }
+            StringTokenizer stringTokenizer = new StringTokenizer( pathext, File.pathSeparator );
+            while (stringTokenizer.hasMoreTokens()) {
+                extensions.add( stringTokenizer.nextToken() );
+            }
+        }
+
+        return extensions;
+    }
+
+    /**
+     * Return the path of the executable on the specified PATH, or null if it is not there.
+     */
+    private static String findExecutable( String executable, String path, List<String> extensions ) {
+
+        StringTokenizer stringTokenizer = new StringTokenizer( path, File.pathSeparator );
+        while (stringTokenizer.hasMoreTokens()) {
+            String directory = stringTokenizer.nextToken();
+            for (String extension : extensions) {
+                File file = new File( directory, executable + extension );
+                if ( file.isFile() && file.canExecute() ) {
+                    return file.getAbsolutePath();
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+
+        return CommandLineUtils.toString( getCommandline() );
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.cli;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.codehaus.plexus.util.Os;
+
+/**
+ * An immutable set of environment variables. The system environment is read once, and each
+ * change returns a new {@link Environment} that shares it, copying only the variables that differ.
+ */
+public final class Environment {
+
+    private static Environment system;
+
+    private final Map<String, String> base;
+    private final Map<String, String> overlay;
+
+    private volatile Map<String, String> variables;
+    private volatile String[] array;
+
+    private Environment(Map<String, String> base, Map<String, String> overlay) {
+
+        this.base = base;
+        this.overlay = overlay;
+    }
+
+    /**
+     * Return the environment this process was started with.
+     * @return
+     */
+    public static synchronized Environment getSystem() {
+
+        if ( system == null ) {
+            Map<String, String> base = newMap();
+            base.putAll( System.getenv() );
+            system = new Environment( Collections.unmodifiableMap( base ), Collections.<String, String> emptyMap() );
+        }
+        return system;
+    }
+
+    /**
+     * Return the value of the variable, or null if it is not set.
+     * @param key
+     * @return
+     */
+    public String get( String key ) {
+
+        if ( overlay.containsKey( key ) ) {
+            return overlay.get( key );
+        }
+        return base.get( key );
+    }
+
+    /**
+     * Return an {@link Environment} with the variable set to the specified value.
+     * @param key
+     * @param value
+     * @return
+     */
+    public Environment with( String key, String value ) {
+
+        Map<String, String> _overlay = newMap();
+        _overlay.putAll( overlay );
+        _overlay.put( key, value );
+        return new Environment( base, Collections.unmodifiableMap( _overlay ) );
+    }
+
+    /**
+     * Return an {@link Environment} with the value added to the front of a {@link File#pathSeparator} separated variable, such as PATH.
+     * @param key
+     * @param value
+     * @return
+     */
+    public Environment prependPath( String key, String value ) {
+
+        return with( key, joinPath( value, get( key ) ) );
+    }
+
+    /**
+     * Return an {@link Environment} with the value added to the end of a {@link File#pathSeparator} separated variable, such as PATH.
+     * @param key
+     * @param value
+     * @return
+     */
+    public Environment appendPath( String key, String value ) {
+
+        return with( key, joinPath( get( key ), value ) );
+    }
+
+    private static String joinPath( String first, String second ) {
+
+        if ( first == null || first.length() == 0 ) {
+            return second;
+        }
+        if ( second == null || second.length() == 0 ) {
+            return first;
+        }
+        return first + File.pathSeparator + second;
+    }
+
+    /**
+     * Return every variable, as an unmodifiable {@link Map}.
+     * @return
+     */
+    public Map<String, String> toMap() {
+
+        Map<String, String> _variables = variables;
+        if ( _variables == null ) {
+            if ( overlay.isEmpty() ) {
+                _variables = base;
+            }
+            else {
+                _variables = newMap();
+                _variables.putAll( base );
+                _variables.putAll( overlay );
+                _variables = Collections.unmodifiableMap( _variables );
+            }
+            variables = _variables;
+        }
+        return _variables;
+    }
+
+    /**
+     * Return every variable in the "key=value" form used by {@link Runtime#exec(String[], String[])}.
+     * @return
+     */
+    public String[] toArray() {
+
+        String[] _array = array;
+        if ( _array == null ) {
+            Map<String, String> _variables = toMap();
+            _array = new String[_variables.size()];
+            int i = 0;
+            for (Map.Entry<String, String> entry : _variables.entrySet()) {
+                _array[i++] = entry.getKey() + "=" + entry.getValue();
+            }
+            array = _array;
+        }
+        return _array.clone();
+    }
+
+    public Properties toProperties() {
+
+        Properties properties = new Properties();
+        properties.putAll( toMap() );
+        return properties;
+    }
+
+    private static Map<String, String> newMap() {
+
+        // variable names are not case sensitive on windows
+        if ( Os.isFamily( Os.FAMILY_WINDOWS ) ) {
+            return new TreeMap<String, String>( String.CASE_INSENSITIVE_ORDER );
+        }
+        return new HashMap<String, String>();
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.cli;
+
+import java.util.Properties;
+
+import org.codehaus.plexus.util.cli.Commandline;
+
+/**
+ * A {@link Commandline} whose environment is an {@link Environment}. It starts from the cached
+ * system environment, rather than reading the system environment again each time it is used, and
+ * variables added to it change only this command.
+ */
+public class HBCCommandline extends Commandline {
+
+    private Environment environment;
+
+    public Environment getEnvironment() {
+
+        if ( environment == null ) {
+            environment = Environment.getSystem();
+        }
+        return environment;
+    }
+
+    public void setEnvironment( Environment environment ) {
+
+        this.environment = environment;
+    }
+
+    @Override
+    public void addEnvironment( String name, String value ) {
+
+        environment = getEnvironment().with( name, value );
+    }
+
+    @Override
+    public void addSystemEnvironment() {
+
+        // the environment always includes the system environment
+    }
+
+    @Override
+    public String[] getEnvironmentVariables() {
+
+        return getEnvironment().toArray();
+    }
+
+    @Override
+    public Properties getSystemEnvVars() {
+
+        return Environment.getSystem().toProperties();
+    }
+}
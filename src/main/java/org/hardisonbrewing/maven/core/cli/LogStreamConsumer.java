@@ -40,7 +40,10 @@ public class LogStreamConsumer implements StreamConsumer {
     @Override
     public void consumeLine( String line ) {
 
-        Log log = JoJoMojo.getMojo().getLog();
+        log( JoJoMojo.getMojo().getLog(), level, line );
+    }
+
+    static void log( Log log, int level, String line ) {
 
         switch (level) {
             case LEVEL_INFO:
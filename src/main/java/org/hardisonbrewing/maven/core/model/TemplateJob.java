@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.model;
+
+import java.io.File;
+import java.util.Properties;
+
+/**
+ * A single output of a batch render. The {@link #properties} are layered over the base
+ * properties shared by the batch.
+ */
+public class TemplateJob {
+
+    public File template;
+    public File file;
+    public Properties properties;
+
+    /**
+     * The time taken to render this job, in milliseconds. Set once the job completes.
+     */
+    public long duration;
+
+    public TemplateJob() {
+
+        // do nothing
+    }
+
+    public TemplateJob(File template, File file, Properties properties) {
+
+        this.template = template;
+        this.file = file;
+        this.properties = properties;
+    }
+}
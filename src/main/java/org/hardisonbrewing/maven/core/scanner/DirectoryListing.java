@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.scanner;
+
+import java.io.File;
+
+/**
+ * The entries of a single directory along with the type of each entry, so a
+ * cached listing can be walked without touching the entries again.
+ */
+final class DirectoryListing {
+
+    public static final byte TYPE_FILE = 0;
+    public static final byte TYPE_DIRECTORY = 1;
+    public static final byte TYPE_OTHER = 2;
+
+    private static final String[] EMPTY = new String[0];
+
+    public final String[] names;
+    public final byte[] types;
+    public final long lastModified;
+    public final long listed;
+
+    volatile boolean touched;
+
+    public DirectoryListing(String[] names, byte[] types, long lastModified, long listed) {
+
+        this.names = names;
+        this.types = types;
+        this.lastModified = lastModified;
+        this.listed = listed;
+    }
+
+    /**
+     * List the specified directory. Entries that no longer exist, such as broken symlinks, are left out.
+     * @param dir
+     * @return
+     */
+    public static DirectoryListing list( File dir ) {
+
+        long listed = System.currentTimeMillis();
+        long lastModified = dir.lastModified();
+
+        String[] fileNames = dir.list();
+        if ( fileNames == null ) {
+            fileNames = EMPTY;
+        }
+
+        String[] names = new String[fileNames.length];
+        byte[] types = new byte[fileNames.length];
+        int count = 0;
+
+        for (String fileName : fileNames) {
+
+            File file = new File( dir, fileName );
+
+            byte type;
+            if ( file.isDirectory() ) {
+                type = TYPE_DIRECTORY;
+            }
+            else if ( file.isFile() ) {
+                type = TYPE_FILE;
+            }
+            else if ( file.exists() ) {
+                type = TYPE_OTHER;
+            }
+            else {
+                continue;
+            }
+
+            names[count] = fileName;
+            types[count] = type;
+            count++;
+        }
+
+        if ( count < names.length ) {
+            String[] _names = new String[count];
+            System.arraycopy( names, 0, _names, 0, count );
+            names = _names;
+            byte[] _types = new byte[count];
+            System.arraycopy( types, 0, _types, 0, count );
+            types = _types;
+        }
+
+        return new DirectoryListing( names, types, lastModified, listed );
+    }
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.scanner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * A cache of the {@link DirectoryListing}s below a root directory. A cached listing is
+ * reused as long as the directory's last modified time has not changed, so unchanged
+ * directories are never listed again and their entries never stat'd.
+ */
+public class FileIndex {
+
+    private static final int VERSION = 1;
+
+    /**
+     * Listings taken within this many milliseconds of the directory's last modification
+     * are not trusted, as a later change in the same timestamp tick would go unnoticed.
+     */
+    private static final long MODIFIED_GRANULARITY = 2000;
+
+    private final Map<String, DirectoryListing> listings = new ConcurrentHashMap<String, DirectoryListing>();
+    private final File root;
+
+    private volatile boolean modified;
+
+    public FileIndex(File root) {
+
+        this.root = root;
+    }
+
+    /**
+     * Return the root directory for this index.
+     * @return
+     */
+    public File getRoot() {
+
+        return root;
+    }
+
+    /**
+     * Return true if a listing has been added or replaced, or was not visited, since the index was loaded or last stored.
+     * @return
+     */
+    public boolean isModified() {
+
+        if ( modified ) {
+            return true;
+        }
+        for (DirectoryListing listing : listings.values()) {
+            if ( !listing.touched ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the listing for a directory below the root, listing it again only if it has changed.
+     * @param dir The directory.
+     * @param path The path of the directory relative to the root.
+     * @return
+     */
+    DirectoryListing getListing( File dir, String path ) {
+
+        DirectoryListing listing = listings.get( path );
+
+        if ( listing != null ) {
+            long lastModified = dir.lastModified();
+            if ( lastModified == listing.lastModified && listing.listed - lastModified > MODIFIED_GRANULARITY ) {
+                listing.touched = true;
+                return listing;
+            }
+        }
+
+        listing = DirectoryListing.list( dir );
+        listing.touched = true;
+        listings.put( path, listing );
+        modified = true;
+        return listing;
+    }
+
+    /**
+     * Return the paths of all files below the root, in the same form and order as
+     * {@link org.hardisonbrewing.maven.core.FileUtils#listFilePathsRecursive(File)}.
+     * @return
+     */
+    public String[] listFilePathsRecursive() {
+
+        List<String> filePaths = new LinkedList<String>();
+        if ( root.isDirectory() ) {
+            listFilePathsRecursive( root, "", filePaths );
+        }
+        else if ( root.exists() ) {
+            filePaths.add( root.getPath() );
+        }
+        return filePaths.toArray( new String[filePaths.size()] );
+    }
+
+    private void listFilePathsRecursive( File dir, String path, List<String> filePaths ) {
+
+        DirectoryListing listing = getListing( dir, path );
+        String vpath = path.length() == 0 ? "" : path + File.separator;
+
+        for (int i = 0; i < listing.names.length; i++) {
+            File file = new File( dir, listing.names[i] );
+            if ( listing.types[i] == DirectoryListing.TYPE_DIRECTORY ) {
+                listFilePathsRecursive( file, vpath + listing.names[i], filePaths );
+            }
+            else {
+                filePaths.add( file.getPath() );
+            }
+        }
+    }
+
+    /**
+     * Load an index previously written with {@link #store(File)}. If the file does not
+     * exist or was written for a different root, an empty index is returned.
+     * @param file The index file.
+     * @param root The root directory.
+     * @return
+     * @throws IOException
+     */
+    public static FileIndex load( File file, File root ) throws IOException {
+
+        FileIndex fileIndex = new FileIndex( root );
+        if ( !file.exists() ) {
+            return fileIndex;
+        }
+
+        DataInputStream inputStream = null;
+
+        try {
+            inputStream = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+
+            if ( inputStream.readInt() != VERSION ) {
+                return fileIndex;
+            }
+            if ( !root.getAbsolutePath().equals( inputStream.readUTF() ) ) {
+                return fileIndex;
+            }
+
+            int count = inputStream.readInt();
+            for (int i = 0; i < count; i++) {
+
+                String path = inputStream.readUTF();
+                long lastModified = inputStream.readLong();
+                long listed = inputStream.readLong();
+
+                int length = inputStream.readInt();
+                String[] names = new String[length];
+                byte[] types = new byte[length];
+                for (int j = 0; j < length; j++) {
+                    names[j] = inputStream.readUTF();
+                    types[j] = inputStream.readByte();
+                }
+
+                fileIndex.listings.put( path, new DirectoryListing( names, types, lastModified, listed ) );
+            }
+        }
+        finally {
+            IOUtil.close( inputStream );
+        }
+
+        return fileIndex;
+    }
+
+    /**
+     * Write the listings used since this index was loaded or last stored. Listings for
+     * directories that were not visited are dropped.
+     * @param file The index file.
+     * @throws IOException
+     */
+    public synchronized void store( File file ) throws IOException {
+
+        File parent = file.getParentFile();
+        if ( parent != null && !parent.exists() ) {
+            parent.mkdirs();
+        }
+
+        DataOutputStream outputStream = null;
+
+        try {
+            outputStream = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+            outputStream.writeInt( VERSION );
+            outputStream.writeUTF( root.getAbsolutePath() );
+
+            Iterator<DirectoryListing> iterator = listings.values().iterator();
+            while (iterator.hasNext()) {
+                if ( !iterator.next().touched ) {
+                    iterator.remove();
+                }
+            }
+
+            List<Entry<String, DirectoryListing>> entries = new ArrayList<Entry<String, DirectoryListing>>( listings.entrySet() );
+
+            outputStream.writeInt( entries.size() );
+            for (Entry<String, DirectoryListing> entry : entries) {
+
+                DirectoryListing listing = entry.getValue();
+                outputStream.writeUTF( entry.getKey() );
+                outputStream.writeLong( listing.lastModified );
+                outputStream.writeLong( listing.listed );
+
+                outputStream.writeInt( listing.names.length );
+                for (int i = 0; i < listing.names.length; i++) {
+                    outputStream.writeUTF( listing.names[i] );
+                    outputStream.writeByte( listing.types[i] );
+                }
+            }
+        }
+        finally {
+            IOUtil.close( outputStream );
+        }
+
+        // listings not visited again before the next store are dropped then
+        for (DirectoryListing listing : listings.values()) {
+            listing.touched = false;
+        }
+        modified = false;
+    }
+}
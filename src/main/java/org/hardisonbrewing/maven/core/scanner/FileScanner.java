@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.scanner;
+
+import java.io.File;
+
+/**
+ * Engine used by {@link org.hardisonbrewing.maven.core.FileUtils} to list the files and
+ * directories below a base directory. Returned paths are relative to the base directory,
+ * in the same form as {@link org.codehaus.plexus.util.DirectoryScanner#getIncludedFiles()}.
+ */
+public interface FileScanner {
+
+    /**
+     * Return the relative paths of all files matching the includes but not the excludes.
+     * @param basedir The directory to scan.
+     * @param includes The include patterns, or null to include everything.
+     * @param excludes The exclude patterns, in addition to {@link org.hardisonbrewing.maven.core.FileUtils#IGNORE_FILES}.
+     * @return
+     */
+    public String[] getIncludedFiles( File basedir, String[] includes, String[] excludes );
+
+    /**
+     * Return the relative paths of all directories matching the includes but not the excludes.
+     * @param basedir The directory to scan.
+     * @param includes The include patterns, or null to include everything.
+     * @param excludes The exclude patterns, in addition to {@link org.hardisonbrewing.maven.core.FileUtils#IGNORE_FILES}.
+     * @return
+     */
+    public String[] getIncludedDirectories( File basedir, String[] includes, String[] excludes );
+}
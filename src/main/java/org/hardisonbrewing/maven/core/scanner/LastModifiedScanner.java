@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.scanner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.hardisonbrewing.maven.core.FileUtils;
+import org.hardisonbrewing.maven.core.ThreadPoolService;
+
+/**
+ * Finds the last modified time of the files below a directory, listing each directory on a
+ * worker pool. Entries named in {@link FileUtils#IGNORE_FILES} are skipped along with
+ * everything below them, the same as the {@link FileScanner}s.
+ */
+public class LastModifiedScanner {
+
+    private final int parallelism;
+
+    private ExecutorService executorService;
+
+    public LastModifiedScanner() {
+
+        this( ThreadPoolService.getDefaultParallelism() );
+    }
+
+    public LastModifiedScanner(int parallelism) {
+
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Return the latest last modified time of the files below the specified directory,
+     * or 0 if there are none.
+     * @param dir
+     * @return
+     */
+    public long lastModified( File dir ) {
+
+        return scan( dir, Long.MAX_VALUE );
+    }
+
+    /**
+     * Return true if any file below the specified directory was modified after the specified
+     * time. The scan stops as soon as one is found.
+     * @param dir
+     * @param time
+     * @return
+     */
+    public boolean isModifiedSince( File dir, long time ) {
+
+        return scan( dir, time ) > time;
+    }
+
+    /**
+     * Return the latest last modified time, stopping early once a time after the threshold is found.
+     */
+    private long scan( File dir, long threshold ) {
+
+        AtomicBoolean done = new AtomicBoolean();
+        CompletionService<Result> completionService = new ExecutorCompletionService<Result>( getExecutorService() );
+        completionService.submit( new ScanTask( dir, done ) );
+        int pending = 1;
+
+        long lastModified = 0;
+
+        try {
+            while (pending > 0) {
+
+                Result result = completionService.take().get();
+                pending--;
+
+                lastModified = Math.max( lastModified, result.lastModified );
+                if ( lastModified > threshold ) {
+                    done.set( true );
+                    break;
+                }
+
+                for (File child : result.directories) {
+                    completionService.submit( new ScanTask( child, done ) );
+                    pending++;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            done.set( true );
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( e );
+        }
+        catch (ExecutionException e) {
+            done.set( true );
+            throw new IllegalStateException( e.getCause() );
+        }
+
+        return lastModified;
+    }
+
+    private synchronized ExecutorService getExecutorService() {
+
+        if ( executorService == null ) {
+            executorService = ThreadPoolService.newThreadPool( "hbc-last-modified", parallelism );
+        }
+        return executorService;
+    }
+
+    private static boolean isIgnored( String fileName ) {
+
+        for (String ignoreFile : FileUtils.IGNORE_FILES) {
+            if ( ignoreFile.equalsIgnoreCase( fileName ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Result {
+
+        private final List<File> directories = new ArrayList<File>();
+        private long lastModified;
+    }
+
+    private static final class ScanTask implements Callable<Result> {
+
+        private final File dir;
+        private final AtomicBoolean done;
+
+        public ScanTask(File dir, AtomicBoolean done) {
+
+            this.dir = dir;
+            this.done = done;
+        }
+
+        @Override
+        public Result call() throws Exception {
+
+            Result result = new Result();
+
+            // another directory already answered the query
+            if ( done.get() ) {
+                return result;
+            }
+
+            String[] fileNames = dir.list();
+            if ( fileNames == null ) {
+                return result;
+            }
+
+            for (String fileName : fileNames) {
+
+                if ( isIgnored( fileName ) ) {
+                    continue;
+                }
+
+                File file = new File( dir, fileName );
+                if ( file.isDirectory() ) {
+                    result.directories.add( file );
+                }
+                else {
+                    result.lastModified = Math.max( result.lastModified, file.lastModified() );
+                }
+            }
+
+            return result;
+        }
+    }
+}
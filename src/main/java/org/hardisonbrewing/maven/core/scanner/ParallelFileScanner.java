@@ -0,0 +1,364 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.scanner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+
+import org.hardisonbrewing.maven.core.FileUtils;
+import org.hardisonbrewing.maven.core.ThreadPoolService;
+
+/**
+ * A {@link FileScanner} that lists each directory on a worker pool. Patterns are compiled
+ * once per scan and directories whose whole subtree is excluded are never descended.
+ * </br>Results, including their order, match a case-insensitive plexus
+ * {@link org.codehaus.plexus.util.DirectoryScanner} that follows symlinks.
+ */
+public class ParallelFileScanner implements FileScanner {
+
+    private static final String REGEX_HANDLER_PREFIX = "%regex[";
+    private static final String ANT_HANDLER_PREFIX = "%ant[";
+
+    private static final String[] DEFAULT_INCLUDES = new String[] { "**" };
+
+    private final FileScanner fallbackScanner = new PlexusFileScanner();
+    private final int parallelism;
+
+    private ExecutorService executorService;
+
+    public ParallelFileScanner() {
+
+        this( ThreadPoolService.getDefaultParallelism() );
+    }
+
+    public ParallelFileScanner(int parallelism) {
+
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public String[] getIncludedFiles( File basedir, String[] includes, String[] excludes ) {
+
+        return getIncludedFiles( basedir, includes, excludes, null );
+    }
+
+    /**
+     * Same as {@link #getIncludedFiles(File, String[], String[])}, reusing the unchanged
+     * directory listings from the specified {@link FileIndex}.
+     * @param basedir The directory to scan.
+     * @param includes The include patterns, or null to include everything.
+     * @param excludes The exclude patterns.
+     * @param fileIndex The {@link FileIndex} for the basedir, or null to list every directory.
+     * @return
+     */
+    public String[] getIncludedFiles( File basedir, String[] includes, String[] excludes, FileIndex fileIndex ) {
+
+        if ( hasPatternHandler( includes ) || hasPatternHandler( excludes ) ) {
+            return fallbackScanner.getIncludedFiles( basedir, includes, excludes );
+        }
+
+        List<String> filePaths = new LinkedList<String>();
+        collectFiles( scan( basedir, includes, excludes, fileIndex ), filePaths );
+        return filePaths.toArray( new String[filePaths.size()] );
+    }
+
+    @Override
+    public String[] getIncludedDirectories( File basedir, String[] includes, String[] excludes ) {
+
+        return getIncludedDirectories( basedir, includes, excludes, null );
+    }
+
+    /**
+     * Same as {@link #getIncludedDirectories(File, String[], String[])}, reusing the unchanged
+     * directory listings from the specified {@link FileIndex}.
+     * @param basedir The directory to scan.
+     * @param includes The include patterns, or null to include everything.
+     * @param excludes The exclude patterns.
+     * @param fileIndex The {@link FileIndex} for the basedir, or null to list every directory.
+     * @return
+     */
+    public String[] getIncludedDirectories( File basedir, String[] includes, String[] excludes, FileIndex fileIndex ) {
+
+        if ( hasPatternHandler( includes ) || hasPatternHandler( excludes ) ) {
+            return fallbackScanner.getIncludedDirectories( basedir, includes, excludes );
+        }
+
+        List<String> filePaths = new LinkedList<String>();
+        collectDirectories( scan( basedir, includes, excludes, fileIndex ), filePaths );
+        return filePaths.toArray( new String[filePaths.size()] );
+    }
+
+    /**
+     * The %regex[] and %ant[] pattern syntaxes are left to the plexus scanner.
+     */
+    private static boolean hasPatternHandler( String[] patterns ) {
+
+        if ( patterns == null ) {
+            return false;
+        }
+        for (String pattern : patterns) {
+            if ( pattern == null ) {
+                continue;
+            }
+            pattern = pattern.trim();
+            if ( pattern.startsWith( REGEX_HANDLER_PREFIX ) || pattern.startsWith( ANT_HANDLER_PREFIX ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Node scan( File basedir, String[] includes, String[] excludes, FileIndex fileIndex ) {
+
+        if ( basedir == null ) {
+            throw new IllegalStateException( "No basedir set" );
+        }
+        if ( !basedir.exists() ) {
+            throw new IllegalStateException( "basedir " + basedir + " does not exist" );
+        }
+        if ( !basedir.isDirectory() ) {
+            throw new IllegalStateException( "basedir " + basedir + " is not a directory" );
+        }
+
+        if ( includes == null || includes.length == 0 ) {
+            includes = DEFAULT_INCLUDES;
+        }
+
+        Selector selector = new Selector( compile( includes ), compile( FileUtils.buildExcludes( excludes ) ) );
+
+        Node root = new Node( basedir, "", new String[0] );
+        root.included = selector.isIncluded( root.segments ) && !selector.isExcluded( root.segments );
+
+        CompletionService<Node> completionService = new ExecutorCompletionService<Node>( getExecutorService() );
+        completionService.submit( new ScanTask( root, selector, fileIndex ) );
+        int pending = 1;
+
+        try {
+            while (pending > 0) {
+                Node node = completionService.take().get();
+                pending--;
+                for (Node child : node.children) {
+                    completionService.submit( new ScanTask( child, selector, fileIndex ) );
+                    pending++;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( e );
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException( e.getCause() );
+        }
+
+        return root;
+    }
+
+    private synchronized ExecutorService getExecutorService() {
+
+        if ( executorService == null ) {
+            executorService = ThreadPoolService.newThreadPool( "hbc-scanner", parallelism );
+        }
+        return executorService;
+    }
+
+    private static PathPattern[] compile( String[] patterns ) {
+
+        List<PathPattern> pathPatterns = new ArrayList<PathPattern>();
+
+        for (String pattern : patterns) {
+
+            if ( pattern == null ) {
+                continue;
+            }
+
+            pattern = FileUtils.normalize( pattern.trim() );
+            if ( pattern.endsWith( File.separator ) ) {
+                pattern += "**";
+            }
+
+            pathPatterns.add( new PathPattern( pattern ) );
+        }
+
+        return pathPatterns.toArray( new PathPattern[pathPatterns.size()] );
+    }
+
+    private static void collectFiles( Node node, List<String> filePaths ) {
+
+        for (Object entry : node.entries) {
+            if ( entry instanceof Node ) {
+                collectFiles( (Node) entry, filePaths );
+            }
+            else {
+                filePaths.add( (String) entry );
+            }
+        }
+    }
+
+    private static void collectDirectories( Node node, List<String> filePaths ) {
+
+        if ( node.included ) {
+            filePaths.add( node.name );
+        }
+        for (Object entry : node.entries) {
+            if ( entry instanceof Node ) {
+                collectDirectories( (Node) entry, filePaths );
+            }
+        }
+    }
+
+    /**
+     * A scanned directory. Entries hold the included file paths and the child
+     * {@link Node}s in listing order so the results can be flattened in the same
+     * order a sequential scan would produce.
+     */
+    private static final class Node {
+
+        private final File file;
+        private final String name;
+        private final String[] segments;
+        private final List<Object> entries = new ArrayList<Object>();
+        private final List<Node> children = new ArrayList<Node>();
+
+        private boolean included;
+
+        public Node(File file, String name, String[] segments) {
+
+            this.file = file;
+            this.name = name;
+            this.segments = segments;
+        }
+    }
+
+    private static final class Selector {
+
+        private static final boolean CASE_SENSITIVE = false;
+
+        private final PathPattern[] includes;
+        private final PathPattern[] excludes;
+
+        public Selector(PathPattern[] includes, PathPattern[] excludes) {
+
+            this.includes = includes;
+            this.excludes = excludes;
+        }
+
+        public boolean isIncluded( String[] segments ) {
+
+            for (PathPattern include : includes) {
+                if ( include.matchPath( segments, CASE_SENSITIVE ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public boolean isExcluded( String[] segments ) {
+
+            for (PathPattern exclude : excludes) {
+                if ( exclude.matchPath( segments, CASE_SENSITIVE ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public boolean isTreeExcluded( String[] segments ) {
+
+            for (PathPattern exclude : excludes) {
+                if ( exclude.matchTree( segments, CASE_SENSITIVE ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public boolean couldHoldIncluded( String[] segments ) {
+
+            for (PathPattern include : includes) {
+                if ( include.matchPatternStart( segments, CASE_SENSITIVE ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class ScanTask implements Callable<Node> {
+
+        private final Node node;
+        private final Selector selector;
+        private final FileIndex fileIndex;
+
+        public ScanTask(Node node, Selector selector, FileIndex fileIndex) {
+
+            this.node = node;
+            this.selector = selector;
+            this.fileIndex = fileIndex;
+        }
+
+        @Override
+        public Node call() throws Exception {
+
+            DirectoryListing listing;
+            if ( fileIndex == null ) {
+                listing = DirectoryListing.list( node.file );
+            }
+            else {
+                listing = fileIndex.getListing( node.file, node.name );
+            }
+
+            String vpath = node.name.length() == 0 ? "" : node.name + File.separator;
+
+            for (int i = 0; i < listing.names.length; i++) {
+
+                String fileName = listing.names[i];
+                String name = vpath + fileName;
+
+                String[] segments = new String[node.segments.length + 1];
+                System.arraycopy( node.segments, 0, segments, 0, node.segments.length );
+                segments[node.segments.length] = fileName;
+
+                if ( listing.types[i] == DirectoryListing.TYPE_DIRECTORY ) {
+
+                    Node child = new Node( new File( node.file, fileName ), name, segments );
+                    child.included = selector.isIncluded( segments ) && !selector.isExcluded( segments );
+
+                    if ( child.included || ( selector.couldHoldIncluded( segments ) && !selector.isTreeExcluded( segments ) ) ) {
+                        node.entries.add( child );
+                        node.children.add( child );
+                    }
+                }
+                else if ( listing.types[i] == DirectoryListing.TYPE_FILE ) {
+
+                    if ( selector.isIncluded( segments ) && !selector.isExcluded( segments ) ) {
+                        node.entries.add( name );
+                    }
+                }
+            }
+
+            return node;
+        }
+    }
+}
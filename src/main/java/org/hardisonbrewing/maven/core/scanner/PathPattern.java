@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.scanner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * An include/exclude pattern tokenized once up front. Matching follows
+ * {@link SelectorUtils#matchPath(String, String, boolean)} and
+ * {@link SelectorUtils#matchPatternStart(String, String, boolean)}, but works on
+ * pre-split path segments so neither side is re-tokenized per candidate.
+ */
+final class PathPattern {
+
+    private static final String DEEP_TREE_MATCH = "**";
+
+    private final String[] tokens;
+    private final boolean[] literals;
+    private final boolean absolute;
+
+    /**
+     * The tokens with any trailing "**" removed, or null if the pattern does not end with "**".
+     * A path matching these tokens has every descendant matched by the full pattern.
+     */
+    private final String[] treeTokens;
+    private final boolean[] treeLiterals;
+
+    public PathPattern(String pattern) {
+
+        absolute = pattern.startsWith( File.separator );
+
+        List<String> _tokens = new ArrayList<String>();
+        StringTokenizer stringTokenizer = new StringTokenizer( pattern, File.separator );
+        while (stringTokenizer.hasMoreTokens()) {
+            _tokens.add( stringTokenizer.nextToken() );
+        }
+
+        tokens = new String[_tokens.size()];
+        _tokens.toArray( tokens );
+        literals = literals( tokens );
+
+        int length = tokens.length;
+        while (length > 0 && DEEP_TREE_MATCH.equals( tokens[length - 1] )) {
+            length--;
+        }
+
+        if ( length == tokens.length ) {
+            treeTokens = null;
+            treeLiterals = null;
+        }
+        else {
+            treeTokens = new String[length];
+            System.arraycopy( tokens, 0, treeTokens, 0, length );
+            treeLiterals = literals( treeTokens );
+        }
+    }
+
+    private static boolean[] literals( String[] tokens ) {
+
+        boolean[] literals = new boolean[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            literals[i] = tokens[i].indexOf( '*' ) == -1 && tokens[i].indexOf( '?' ) == -1;
+        }
+        return literals;
+    }
+
+    /**
+     * Return true if the relative path matches this pattern.
+     * @param segments The path segments.
+     * @param caseSensitive
+     * @return
+     */
+    public boolean matchPath( String[] segments, boolean caseSensitive ) {
+
+        if ( absolute ) {
+            return false;
+        }
+        return matchPath( tokens, literals, segments, caseSensitive );
+    }
+
+    /**
+     * Return true if the relative path and everything below it matches this pattern.
+     * @param segments The path segments.
+     * @param caseSensitive
+     * @return
+     */
+    public boolean matchTree( String[] segments, boolean caseSensitive ) {
+
+        if ( absolute || treeTokens == null ) {
+            return false;
+        }
+        if ( treeTokens.length == 0 ) {
+            return true;
+        }
+        return matchPath( treeTokens, treeLiterals, segments, caseSensitive );
+    }
+
+    /**
+     * Return true if a path below the relative path could match this pattern.
+     * @param segments The path segments.
+     * @param caseSensitive
+     * @return
+     */
+    public boolean matchPatternStart( String[] segments, boolean caseSensitive ) {
+
+        if ( absolute ) {
+            return false;
+        }
+
+        int patIdxStart = 0;
+        int patIdxEnd = tokens.length - 1;
+        int strIdxStart = 0;
+        int strIdxEnd = segments.length - 1;
+
+        while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd) {
+            if ( DEEP_TREE_MATCH.equals( tokens[patIdxStart] ) ) {
+                break;
+            }
+            if ( !match( tokens[patIdxStart], literals[patIdxStart], segments[strIdxStart], caseSensitive ) ) {
+                return false;
+            }
+            patIdxStart++;
+            strIdxStart++;
+        }
+
+        if ( strIdxStart > strIdxEnd ) {
+            return true;
+        }
+        return patIdxStart <= patIdxEnd;
+    }
+
+    private static boolean matchPath( String[] tokens, boolean[] literals, String[] segments, boolean caseSensitive ) {
+
+        int patIdxStart = 0;
+        int patIdxEnd = tokens.length - 1;
+        int strIdxStart = 0;
+        int strIdxEnd = segments.length - 1;
+
+        // up to first '**'
+        while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd) {
+            if ( DEEP_TREE_MATCH.equals( tokens[patIdxStart] ) ) {
+                break;
+            }
+            if ( !match( tokens[patIdxStart], literals[patIdxStart], segments[strIdxStart], caseSensitive ) ) {
+                return false;
+            }
+            patIdxStart++;
+            strIdxStart++;
+        }
+
+        if ( strIdxStart > strIdxEnd ) {
+            return onlyDeepTreeMatches( tokens, patIdxStart, patIdxEnd );
+        }
+        if ( patIdxStart > patIdxEnd ) {
+            return false;
+        }
+
+        // up to last '**'
+        while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd) {
+            if ( DEEP_TREE_MATCH.equals( tokens[patIdxEnd] ) ) {
+                break;
+            }
+            if ( !match( tokens[patIdxEnd], literals[patIdxEnd], segments[strIdxEnd], caseSensitive ) ) {
+                return false;
+            }
+            patIdxEnd--;
+            strIdxEnd--;
+        }
+
+        if ( strIdxStart > strIdxEnd ) {
+            return onlyDeepTreeMatches( tokens, patIdxStart, patIdxEnd );
+        }
+
+        while (patIdxStart != patIdxEnd && strIdxStart <= strIdxEnd) {
+
+            int patIdxTmp = -1;
+            for (int i = patIdxStart + 1; i <= patIdxEnd; i++) {
+                if ( DEEP_TREE_MATCH.equals( tokens[i] ) ) {
+                    patIdxTmp = i;
+                    break;
+                }
+            }
+
+            if ( patIdxTmp == patIdxStart + 1 ) {
+                // '**/**' situation, so skip one
+                patIdxStart++;
+                continue;
+            }
+
+            // find the pattern between patIdxStart & patIdxTmp in the segments
+            int patLength = patIdxTmp - patIdxStart - 1;
+            int strLength = strIdxEnd - strIdxStart + 1;
+            int foundIdx = -1;
+
+            strLoop: for (int i = 0; i <= strLength - patLength; i++) {
+                for (int j = 0; j < patLength; j++) {
+                    int patIdx = patIdxStart + j + 1;
+                    if ( !match( tokens[patIdx], literals[patIdx], segments[strIdxStart + i + j], caseSensitive ) ) {
+                        continue strLoop;
+                    }
+                }
+                foundIdx = strIdxStart + i;
+                break;
+            }
+
+            if ( foundIdx == -1 ) {
+                return false;
+            }
+
+            patIdxStart = patIdxTmp;
+            strIdxStart = foundIdx + patLength;
+        }
+
+        return onlyDeepTreeMatches( tokens, patIdxStart, patIdxEnd );
+    }
+
+    private static boolean onlyDeepTreeMatches( String[] tokens, int start, int end ) {
+
+        for (int i = start; i <= end; i++) {
+            if ( !DEEP_TREE_MATCH.equals( tokens[i] ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean match( String token, boolean literal, String segment, boolean caseSensitive ) {
+
+        if ( !literal ) {
+            return SelectorUtils.match( token, segment, caseSensitive );
+        }
+
+        if ( caseSensitive ) {
+            return token.equals( segment );
+        }
+
+        int length = token.length();
+        if ( length != segment.length() ) {
+            return false;
+        }
+
+        // same comparison SelectorUtils.match uses when ignoring case
+        for (int i = 0; i < length; i++) {
+            if ( Character.toUpperCase( token.charAt( i ) ) != Character.toUpperCase( segment.charAt( i ) ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
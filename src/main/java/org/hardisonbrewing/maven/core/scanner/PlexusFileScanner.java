@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2013 Martin M Reed
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.hardisonbrewing.maven.core.scanner;
+
+import java.io.File;
+
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.hardisonbrewing.maven.core.FileUtils;
+
+/**
+ * A {@link FileScanner} backed by a single-threaded plexus {@link DirectoryScanner}.
+ */
+public class PlexusFileScanner implements FileScanner {
+
+    @Override
+    public String[] getIncludedFiles( File basedir, String[] includes, String[] excludes ) {
+
+        DirectoryScanner scanner = FileUtils.buildScanner( basedir, includes, excludes );
+        scanner.scan();
+        return scanner.getIncludedFiles();
+    }
+
+    @Override
+    public String[] getIncludedDirectories( File basedir, String[] includes, String[] excludes ) {
+
+        DirectoryScanner scanner = FileUtils.buildScanner( basedir, includes, excludes );
+        scanner.scan();
+        return scanner.getIncludedDirectories();
+    }
+}